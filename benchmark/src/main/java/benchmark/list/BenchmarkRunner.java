@@ -0,0 +1,26 @@
+package benchmark.list;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+    基准测试入口，默认开启GC分析器（-prof gc），
+    这样每个结果都会带上gc.alloc.rate.norm（每次操作分配的字节数），分配量变多时能直接看出来。
+    其余命令行参数与JMH自带的入口相同，例如：
+    java -jar target/benchmarks.jar ListBenchmark.removeAll -p listType=ArrayList
+*/
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
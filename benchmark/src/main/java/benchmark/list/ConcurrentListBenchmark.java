@@ -0,0 +1,105 @@
+package benchmark.list;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SnapshotArrayList;
+import java.util.StampedArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+    多线程共享一个线程安全列表时的吞吐量。
+    参数：
+    listType      synchronizedList（Collections.synchronizedList包装的ArrayList）、
+                  SnapshotArrayList（写时复制）或StampedArrayList（乐观读）
+    size          列表长度，写操作先add再remove(0)，列表长度保持不变
+    writePercent  写操作所占的百分比，其余为get
+
+    所有线程共享同一个列表（Scope.Benchmark），main方法依次用1、2、4、8、16、32、64个线程运行：
+    java -cp target/benchmarks.jar benchmark.list.ConcurrentListBenchmark
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xbootclasspath/p:target/patch-classes", "-Xms2g", "-Xmx2g"})
+public class ConcurrentListBenchmark {
+
+    //依次运行的线程数
+    static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    @Param({"synchronizedList", "SnapshotArrayList", "StampedArrayList"})
+    String listType;
+
+    @Param({"1000"})
+    int size;
+
+    @Param({"0", "1", "10", "50"})
+    int writePercent;
+
+    List<Integer> list;
+
+    @Setup
+    public void setup() {
+        List<Integer> initial = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            initial.add(i);
+        if ("synchronizedList".equals(listType))
+            list = Collections.synchronizedList(initial);
+        else if ("SnapshotArrayList".equals(listType))
+            list = new SnapshotArrayList<>(initial);
+        else
+            list = new StampedArrayList<>(initial);
+    }
+
+    //按writePercent混合读写，读为随机下标的get，写为add到末尾再删除第一个元素
+    @Benchmark
+    public Integer mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(100) < writePercent) {
+            list.add(1);
+            return list.remove(0);
+        }
+        return list.get(random.nextInt(size));
+    }
+
+    //只读：contains，查找一个不在列表中的元素，需要扫描整个列表
+    @Benchmark
+    public boolean containsMissing() {
+        return list.contains(-1);
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .parent(cmd)
+                    .include(ConcurrentListBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package benchmark.list;
+
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.LockFreeLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+    多线程共享一个双端队列时的吞吐量。
+    参数：
+    dequeType   synchronized（LinkedList，每个操作都放在synchronized块中，与现在的用法相同）、LockFreeLinkedDeque或ConcurrentLinkedDeque（对照）
+    prefill     队列中预先放入的元素个数，保证poll/pop大多能取到元素
+
+    所有线程共享同一个队列（Scope.Benchmark），每个基准测试都是先插入一个元素再取出一个元素，队列长度保持不变。
+    线程数由JMH的-t参数指定，main方法依次用1、2、4、8、16、32、64个线程运行全部基准测试：
+    java -cp target/benchmarks.jar benchmark.list.DequeContentionBenchmark
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xbootclasspath/p:target/patch-classes", "-Xms2g", "-Xmx2g"})
+public class DequeContentionBenchmark {
+
+    //依次运行的线程数
+    static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    @Param({"synchronized", "LockFreeLinkedDeque", "ConcurrentLinkedDeque"})
+    String dequeType;
+
+    @Param({"1000"})
+    int prefill;
+
+    Deque<Integer> deque;
+
+    //dequeType为synchronized时的锁，其余情况为null
+    Object lock;
+
+    @Setup
+    public void setup() {
+        if ("synchronized".equals(dequeType)) {
+            deque = new LinkedList<>();
+            lock = deque;
+        } else if ("LockFreeLinkedDeque".equals(dequeType))
+            deque = new LockFreeLinkedDeque<>();
+        else
+            deque = new ConcurrentLinkedDeque<>();
+        for (int i = 0; i < prefill; i++)
+            deque.offerLast(i);
+    }
+
+    //队列用法：从末尾插入，从头部取出
+    @Benchmark
+    public Integer offerPoll() {
+        final Deque<Integer> deque = this.deque;
+        final Object lock = this.lock;
+        if (lock == null) {
+            deque.offer(1);
+            return deque.poll();
+        }
+        synchronized (lock) {
+            deque.offer(1);
+        }
+        synchronized (lock) {
+            return deque.poll();
+        }
+    }
+
+    //栈用法：在头部插入和取出
+    @Benchmark
+    public Integer pushPop() {
+        final Deque<Integer> deque = this.deque;
+        final Object lock = this.lock;
+        if (lock == null) {
+            deque.push(1);
+            return deque.pop();
+        }
+        synchronized (lock) {
+            deque.push(1);
+        }
+        synchronized (lock) {
+            return deque.pop();
+        }
+    }
+
+    //两端混合：插入到头部，从末尾取出，并读取头部元素
+    @Benchmark
+    public Integer offerFirstPollLast() {
+        final Deque<Integer> deque = this.deque;
+        final Object lock = this.lock;
+        if (lock == null) {
+            deque.offerFirst(1);
+            deque.peekFirst();
+            return deque.pollLast();
+        }
+        synchronized (lock) {
+            deque.offerFirst(1);
+        }
+        synchronized (lock) {
+            deque.peekFirst();
+        }
+        synchronized (lock) {
+            return deque.pollLast();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .parent(cmd)
+                    .include(DequeContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
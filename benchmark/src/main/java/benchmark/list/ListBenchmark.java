@@ -0,0 +1,206 @@
+package benchmark.list;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+    ArrayList和LinkedList热点操作的基准测试。
+    参数：
+    listType      列表类型，ArrayList或LinkedList
+    size          元素个数
+    elementType   元素类型，Integer（装箱数字）或String
+    accessPattern 按下标访问的方式，sequential为顺序访问，random为随机访问，只影响get
+
+    会修改列表的操作（removeIf、removeAll、sort等）每次都先复制一份列表，
+    复制本身的开销可以用copyList基准测试扣除。
+    每个fork都通过-Xbootclasspath/p加载target/patch-classes中仓库编译出的java.util类（需要JDK 8）。
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xbootclasspath/p:target/patch-classes", "-Xms2g", "-Xmx2g"})
+public class ListBenchmark {
+
+    @Param({"ArrayList", "LinkedList"})
+    String listType;
+
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"Integer", "String"})
+    String elementType;
+
+    //基准列表，只读，不在基准测试中修改
+    List<Object> source;
+
+    //source中的元素，按顺序存放，用来构建新列表
+    Object[] elements;
+
+    //removeAll/retainAll的参数，包含一半的元素，类型与listType相同
+    List<Object> half;
+
+    //remove(Object)要删除的元素，位于列表中间
+    Object middle;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            int v = random.nextInt();
+            elements[i] = "Integer".equals(elementType) ? (Object) v : "e" + v;
+        }
+        source = newList();
+        Collections.addAll(source, elements);
+
+        half = newList();
+        for (int i = 0; i < size; i += 2)
+            half.add(elements[i]);
+        middle = elements[size / 2];
+    }
+
+    //按下标访问的方式单独作为一个State，这样accessPattern参数只会让get多跑一组
+    @State(Scope.Thread)
+    public static class Access {
+
+        @Param({"sequential", "random"})
+        String accessPattern;
+
+        //按下标访问时使用的下标序列，最多1000个，避免LinkedList的测试时间过长
+        int[] indexes;
+
+        @Setup
+        public void setup(ListBenchmark benchmark) {
+            Random random = new Random(7);
+            int size = benchmark.size;
+            indexes = new int[Math.min(size, 1000)];
+            for (int i = 0; i < indexes.length; i++)
+                indexes[i] = "random".equals(accessPattern) ? random.nextInt(size) : i;
+        }
+    }
+
+    //创建一个空的listType类型的列表
+    List<Object> newList() {
+        return "ArrayList".equals(listType) ? new ArrayList<>() : new LinkedList<>();
+    }
+
+    //复制一份source
+    List<Object> copy() {
+        return "ArrayList".equals(listType) ? new ArrayList<>(source) : new LinkedList<>(source);
+    }
+
+    //复制的开销，用于从其他基准测试中扣除
+    @Benchmark
+    public List<Object> copyList() {
+        return copy();
+    }
+
+    //逐个add到末尾，包含ArrayList的grow和LinkedList的linkLast
+    @Benchmark
+    public List<Object> add() {
+        List<Object> list = newList();
+        for (Object e : elements)
+            list.add(e);
+        return list;
+    }
+
+    //在中间位置add，ArrayList要移动一半元素，LinkedList要用node(index)找到一半位置
+    @Benchmark
+    public List<Object> addAtIndex() {
+        List<Object> list = copy();
+        for (int i = 0; i < 100; i++)
+            list.add(list.size() / 2, middle);
+        return list;
+    }
+
+    //按下标get，LinkedList时测的就是node(index)
+    @Benchmark
+    public void get(Access access, Blackhole bh) {
+        final List<Object> list = source;
+        final int[] idx = access.indexes;
+        for (int i = 0; i < idx.length; i++)
+            bh.consume(list.get(idx[i]));
+    }
+
+    //删除中间位置的一个元素
+    @Benchmark
+    public boolean removeObject() {
+        return copy().remove(middle);
+    }
+
+    //删除一半元素
+    @Benchmark
+    public List<Object> removeIf() {
+        List<Object> list = copy();
+        list.removeIf(e -> (e.hashCode() & 1) == 0);
+        return list;
+    }
+
+    //batchRemove：参数为同类型的列表，contains是线性查找
+    @Benchmark
+    public List<Object> removeAll() {
+        List<Object> list = copy();
+        list.removeAll(half);
+        return list;
+    }
+
+    @Benchmark
+    public List<Object> retainAll() {
+        List<Object> list = copy();
+        list.retainAll(half);
+        return list;
+    }
+
+    //用迭代器遍历
+    @Benchmark
+    public void iterator(Blackhole bh) {
+        for (Iterator<Object> it = source.iterator(); it.hasNext(); )
+            bh.consume(it.next());
+    }
+
+    //用forEach遍历
+    @Benchmark
+    public void forEach(Blackhole bh) {
+        source.forEach(bh::consume);
+    }
+
+    //按hashCode排序
+    @Benchmark
+    public List<Object> sort() {
+        List<Object> list = copy();
+        list.sort((a, b) -> Integer.compare(a.hashCode(), b.hashCode()));
+        return list;
+    }
+
+    //顺序流，分别使用ArrayListSpliterator和LLSpliterator
+    @Benchmark
+    public long sequentialStream() {
+        return source.stream().mapToLong(Object::hashCode).sum();
+    }
+
+    //并行流
+    @Benchmark
+    public long parallelStream() {
+        return source.parallelStream().mapToLong(Object::hashCode).sum();
+    }
+}
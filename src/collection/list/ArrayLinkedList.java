@@ -0,0 +1,903 @@
+
+package java.util;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+
+/*
+    节点存放在并行数组中的双向链表，提供与LinkedList相同的List和Deque接口。
+    LinkedList每次linkLast都要new一个Node，unlink时再把节点丢给GC，元素频繁进出的工作队列中这部分垃圾占了分配量的大头。
+    这个类把第i个节点存放在items[i]、next[i]、prev[i]三个数组的同一个位置（槽位）上，
+    用int下标代替节点引用，NIL（-1）代替null；断开的槽位放入空闲链表（通过next数组串起来），下次插入时优先复用。
+    数组只在元素个数超过容量时扩容，容量足够时addLast、pollFirst、迭代器的add/remove等操作都不会分配内存。
+    与LinkedList一样，这个类不是线程安全的。
+*/
+public class ArrayLinkedList<E>
+        extends AbstractSequentialList<E>
+        implements List<E>, Deque<E>, Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = -6243119561420384212L;
+
+    //表示没有节点，相当于LinkedList中的null
+    static final int NIL = -1;
+
+    //默认容量
+    private static final int DEFAULT_CAPACITY = 10;
+
+    //数组最大长度
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    //空数组，第一次插入时才分配DEFAULT_CAPACITY长度的数组
+    private static final Object[] EMPTY_ITEMS = {};
+    private static final int[] EMPTY_LINKS = {};
+
+    //节点值，items[i]为槽位i中的节点值
+    transient Object[] items;
+
+    //后继节点的槽位，对空闲槽位来说是空闲链表中下一个空闲槽位
+    transient int[] next;
+
+    //前驱节点的槽位
+    transient int[] prev;
+
+    //记录节点个数
+    transient int size = 0;
+
+    //头节点的槽位
+    transient int first = NIL;
+
+    //末尾节点的槽位
+    transient int last = NIL;
+
+    //空闲链表的第一个槽位
+    transient int free = NIL;
+
+    //[0, top)中的槽位被使用过，[top, items.length)中的槽位从未使用过，不在空闲链表中
+    transient int top = 0;
+
+    //创建一个空的ArrayLinkedList，第一次插入时才分配数组
+    public ArrayLinkedList() {
+        this.items = EMPTY_ITEMS;
+        this.next = EMPTY_LINKS;
+        this.prev = EMPTY_LINKS;
+    }
+
+    //创建一个空的ArrayLinkedList，并预先分配initialCapacity个槽位
+    public ArrayLinkedList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        this.items = new Object[initialCapacity];
+        this.next = new int[initialCapacity];
+        this.prev = new int[initialCapacity];
+    }
+
+    //新建一个包含传入集合中所有元素的ArrayLinkedList
+    public ArrayLinkedList(Collection<? extends E> c) {
+        this(c.size());
+        addAll(c);
+    }
+
+    //确保至少有minCapacity个槽位
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > items.length)
+            grow(minCapacity);
+    }
+
+    //扩容，与ArrayList相同，新容量为原来的1.5倍
+    private void grow(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        int oldCapacity = items.length;
+        int newCapacity = oldCapacity + (oldCapacity >> 1);
+        if (newCapacity < DEFAULT_CAPACITY)
+            newCapacity = DEFAULT_CAPACITY;
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = (minCapacity > MAX_ARRAY_SIZE) ? Integer.MAX_VALUE : MAX_ARRAY_SIZE;
+        items = Arrays.copyOf(items, newCapacity);
+        next = Arrays.copyOf(next, newCapacity);
+        prev = Arrays.copyOf(prev, newCapacity);
+    }
+
+    //取得一个槽位，优先从空闲链表中取，没有空闲槽位时使用top处的新槽位
+    private int allocate() {
+        int s = free;
+        if (s != NIL) {
+            free = next[s];
+            return s;
+        }
+        if (top == items.length)
+            grow(top + 1);
+        return top++;
+    }
+
+    //回收槽位s，放入空闲链表
+    private void release(int s) {
+        items[s] = null; // clear to let GC do its work
+        prev[s] = NIL;
+        next[s] = free;
+        free = s;
+    }
+
+    //生成值为e的节点，并将节点插入到链表头部
+    private void linkFirst(E e) {
+        final int f = first;
+        final int s = allocate();
+        items[s] = e;
+        prev[s] = NIL;
+        next[s] = f;
+        first = s;
+        if (f == NIL)
+            last = s;
+        else
+            prev[f] = s;
+        size++;
+        modCount++;
+    }
+
+    //生成值为e的节点，并将节点插入到链表尾部
+    void linkLast(E e) {
+        final int l = last;
+        final int s = allocate();
+        items[s] = e;
+        prev[s] = l;
+        next[s] = NIL;
+        last = s;
+        if (l == NIL)
+            first = s;
+        else
+            next[l] = s;
+        size++;
+        modCount++;
+    }
+
+    //生成值为e的节点，并将节点插入到槽位succ的节点之前
+    void linkBefore(E e, int succ) {
+        // assert succ != NIL;
+        final int pred = prev[succ];
+        final int s = allocate();
+        items[s] = e;
+        prev[s] = pred;
+        next[s] = succ;
+        prev[succ] = s;
+        if (pred == NIL)
+            first = s;
+        else
+            next[pred] = s;
+        size++;
+        modCount++;
+    }
+
+    //断开槽位x的节点，回收槽位，并返回节点值
+    E unlink(int x) {
+        // assert x != NIL;
+        @SuppressWarnings("unchecked") final E element = (E) items[x];
+        final int nx = next[x];
+        final int px = prev[x];
+
+        if (px == NIL)
+            first = nx;
+        else
+            next[px] = nx;
+
+        if (nx == NIL)
+            last = px;
+        else
+            prev[nx] = px;
+
+        release(x);
+        size--;
+        modCount++;
+        return element;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E item(int s) {
+        return (E) items[s];
+    }
+
+    //返回头节点的值，链表为空时抛出NoSuchElementException异常
+    public E getFirst() {
+        final int f = first;
+        if (f == NIL)
+            throw new NoSuchElementException();
+        return item(f);
+    }
+
+    //返回末尾节点的值，链表为空时抛出NoSuchElementException异常
+    public E getLast() {
+        final int l = last;
+        if (l == NIL)
+            throw new NoSuchElementException();
+        return item(l);
+    }
+
+    //删除头节点并返回节点值，链表为空时抛出NoSuchElementException异常
+    public E removeFirst() {
+        final int f = first;
+        if (f == NIL)
+            throw new NoSuchElementException();
+        return unlink(f);
+    }
+
+    //删除末尾节点并返回节点值，链表为空时抛出NoSuchElementException异常
+    public E removeLast() {
+        final int l = last;
+        if (l == NIL)
+            throw new NoSuchElementException();
+        return unlink(l);
+    }
+
+    //将元素插入到链表头部
+    public void addFirst(E e) {
+        linkFirst(e);
+    }
+
+    //将元素插入到链表尾部
+    public void addLast(E e) {
+        linkLast(e);
+    }
+
+    //判断是否包含传入元素
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    //返回节点个数
+    public int size() {
+        return size;
+    }
+
+    //将元素插入到链表尾部
+    public boolean add(E e) {
+        linkLast(e);
+        return true;
+    }
+
+    //删除第一次出现的传入元素
+    public boolean remove(Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    //将collection中的元素全部插入到链表尾部
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size, c);
+    }
+
+    //将collection中的元素全部插入到index位置，先一次性扩容，再逐个插入
+    public boolean addAll(int index, Collection<? extends E> c) {
+        checkPositionIndex(index);
+
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        if (numNew == 0)
+            return false;
+
+        ensureCapacity(size + numNew);
+        if (index == size) {
+            for (Object o : a) {
+                @SuppressWarnings("unchecked") E e = (E) o;
+                linkLast(e);
+            }
+        } else {
+            int succ = node(index);
+            for (Object o : a) {
+                @SuppressWarnings("unchecked") E e = (E) o;
+                linkBefore(e, succ);
+            }
+        }
+        return true;
+    }
+
+    //删除符合规则的节点，沿着槽位链表遍历，不创建迭代器
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        //每断开一个节点modCount加一，expectedModCount跟着加一
+        int expectedModCount = modCount;
+        boolean removed = false;
+        for (int x = first; x != NIL && modCount == expectedModCount; ) {
+            //先记录后继节点，因为release会将next[x]改为空闲链表的下一个槽位
+            int nx = next[x];
+            if (filter.test(item(x))) {
+                unlink(x);
+                expectedModCount++;
+                removed = true;
+            }
+            x = nx;
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return removed;
+    }
+
+    //清空链表，保留数组，之后的插入不会重新分配
+    public void clear() {
+        Arrays.fill(items, 0, top, null);
+        first = last = free = NIL;
+        top = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /*
+        按链表顺序把节点重新排列到槽位[0, size)中，并把数组修剪为size。
+        反复插入删除之后，链表顺序与槽位顺序可能相差很远，整理之后遍历会顺序访问数组。
+    */
+    public void trimToSize() {
+        modCount++;
+        Object[] newItems = (size == 0) ? EMPTY_ITEMS : new Object[size];
+        int[] newNext = (size == 0) ? EMPTY_LINKS : new int[size];
+        int[] newPrev = (size == 0) ? EMPTY_LINKS : new int[size];
+        int i = 0;
+        for (int x = first; x != NIL; x = next[x], i++) {
+            newItems[i] = items[x];
+            newPrev[i] = i - 1;
+            newNext[i] = (i + 1 < size) ? i + 1 : NIL;
+        }
+        items = newItems;
+        next = newNext;
+        prev = newPrev;
+        first = (size == 0) ? NIL : 0;
+        last = size - 1;
+        free = NIL;
+        top = size;
+    }
+
+    // Positional Access Operations
+
+    //获取指定位置的节点的值
+    public E get(int index) {
+        checkElementIndex(index);
+        return item(node(index));
+    }
+
+    //更新指定位置节点的值，并返回旧值
+    public E set(int index, E element) {
+        checkElementIndex(index);
+        int x = node(index);
+        E oldVal = item(x);
+        items[x] = element;
+        return oldVal;
+    }
+
+    //在指定位置添加新节点
+    public void add(int index, E element) {
+        checkPositionIndex(index);
+
+        if (index == size)
+            linkLast(element);
+        else
+            linkBefore(element, node(index));
+    }
+
+    //删除指定位置节点
+    public E remove(int index) {
+        checkElementIndex(index);
+        return unlink(node(index));
+    }
+
+    //判断传入索引是否是节点索引
+    private boolean isElementIndex(int index) {
+        return index >= 0 && index < size;
+    }
+
+    //判断传入索引是否是节点索引（包含size）
+    private boolean isPositionIndex(int index) {
+        return index >= 0 && index <= size;
+    }
+
+    //生成异常信息
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    private void checkElementIndex(int index) {
+        if (!isElementIndex(index))
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private void checkPositionIndex(int index) {
+        if (!isPositionIndex(index))
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //获取指定索引的节点所在的槽位，从离index较近的一端开始遍历
+    int node(int index) {
+        // assert isElementIndex(index);
+        if (index < (size >> 1)) {
+            int x = first;
+            for (int i = 0; i < index; i++)
+                x = next[x];
+            return x;
+        } else {
+            int x = last;
+            for (int i = size - 1; i > index; i--)
+                x = prev[x];
+            return x;
+        }
+    }
+
+    // Search Operations
+
+    //返回传入对象在链表中第一次出现的位置
+    public int indexOf(Object o) {
+        int index = 0;
+        if (o == null) {
+            for (int x = first; x != NIL; x = next[x]) {
+                if (items[x] == null)
+                    return index;
+                index++;
+            }
+        } else {
+            for (int x = first; x != NIL; x = next[x]) {
+                if (o.equals(items[x]))
+                    return index;
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    //返回传入对象在链表中最后一次出现的位置
+    public int lastIndexOf(Object o) {
+        int index = size;
+        if (o == null) {
+            for (int x = last; x != NIL; x = prev[x]) {
+                index--;
+                if (items[x] == null)
+                    return index;
+            }
+        } else {
+            for (int x = last; x != NIL; x = prev[x]) {
+                index--;
+                if (o.equals(items[x]))
+                    return index;
+            }
+        }
+        return -1;
+    }
+
+    // Queue operations.
+
+    //获取头节点的值，链表为空时返回null
+    public E peek() {
+        final int f = first;
+        return (f == NIL) ? null : item(f);
+    }
+
+    //获取头节点的值，链表为空时抛出NoSuchElementException异常
+    public E element() {
+        return getFirst();
+    }
+
+    //删除头节点并返回节点值，链表为空时返回null
+    public E poll() {
+        final int f = first;
+        return (f == NIL) ? null : unlink(f);
+    }
+
+    //删除头节点并返回节点值，链表为空时抛出NoSuchElementException异常
+    public E remove() {
+        return removeFirst();
+    }
+
+    //将元素插入到链表尾部
+    public boolean offer(E e) {
+        return add(e);
+    }
+
+    // Deque operations
+
+    //将元素插入到链表头部
+    public boolean offerFirst(E e) {
+        addFirst(e);
+        return true;
+    }
+
+    //将元素插入到链表尾部
+    public boolean offerLast(E e) {
+        addLast(e);
+        return true;
+    }
+
+    //获取头节点的值，链表为空时返回null
+    public E peekFirst() {
+        return peek();
+    }
+
+    //获取末尾节点的值，链表为空时返回null
+    public E peekLast() {
+        final int l = last;
+        return (l == NIL) ? null : item(l);
+    }
+
+    //删除头节点并返回节点值，链表为空时返回null
+    public E pollFirst() {
+        return poll();
+    }
+
+    //删除末尾节点并返回节点值，链表为空时返回null
+    public E pollLast() {
+        final int l = last;
+        return (l == NIL) ? null : unlink(l);
+    }
+
+    //将元素插入到链表头部
+    public void push(E e) {
+        addFirst(e);
+    }
+
+    //删除头节点并返回节点值
+    public E pop() {
+        return removeFirst();
+    }
+
+    //删除第一次出现的传入元素
+    public boolean removeFirstOccurrence(Object o) {
+        if (o == null) {
+            for (int x = first; x != NIL; x = next[x]) {
+                if (items[x] == null) {
+                    unlink(x);
+                    return true;
+                }
+            }
+        } else {
+            for (int x = first; x != NIL; x = next[x]) {
+                if (o.equals(items[x])) {
+                    unlink(x);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //删除最后一次出现的传入元素
+    public boolean removeLastOccurrence(Object o) {
+        if (o == null) {
+            for (int x = last; x != NIL; x = prev[x]) {
+                if (items[x] == null) {
+                    unlink(x);
+                    return true;
+                }
+            }
+        } else {
+            for (int x = last; x != NIL; x = prev[x]) {
+                if (o.equals(items[x])) {
+                    unlink(x);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //返回一个从index位置开始的列表迭代器
+    public ListIterator<E> listIterator(int index) {
+        checkPositionIndex(index);
+        return new ListItr(index);
+    }
+
+    //列表迭代器，结构与LinkedList.ListItr相同，用槽位代替节点引用
+    private class ListItr implements ListIterator<E> {
+        //刚被迭代的节点的槽位
+        private int lastReturned = NIL;
+        //下一个要迭代的节点的槽位
+        private int next;
+        //下一个要迭代的节点的位置
+        private int nextIndex;
+        private int expectedModCount = modCount;
+
+        ListItr(int index) {
+            // assert isPositionIndex(index);
+            next = (index == size) ? NIL : node(index);
+            nextIndex = index;
+        }
+
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        public E next() {
+            checkForComodification();
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            lastReturned = next;
+            next = ArrayLinkedList.this.next[next];
+            nextIndex++;
+            return item(lastReturned);
+        }
+
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        public E previous() {
+            checkForComodification();
+            if (!hasPrevious())
+                throw new NoSuchElementException();
+
+            lastReturned = next = (next == NIL) ? last : prev[next];
+            nextIndex--;
+            return item(lastReturned);
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        //删除刚被迭代过的节点，槽位被回收，后续插入会复用它
+        public void remove() {
+            checkForComodification();
+            if (lastReturned == NIL)
+                throw new IllegalStateException();
+
+            int lastNext = ArrayLinkedList.this.next[lastReturned];
+            unlink(lastReturned);
+            if (next == lastReturned)
+                next = lastNext;
+            else
+                nextIndex--;
+            lastReturned = NIL;
+            expectedModCount++;
+        }
+
+        public void set(E e) {
+            if (lastReturned == NIL)
+                throw new IllegalStateException();
+            checkForComodification();
+            items[lastReturned] = e;
+        }
+
+        public void add(E e) {
+            checkForComodification();
+            lastReturned = NIL;
+            if (next == NIL)
+                linkLast(e);
+            else
+                linkBefore(e, next);
+            nextIndex++;
+            expectedModCount++;
+        }
+
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            while (modCount == expectedModCount && nextIndex < size) {
+                action.accept(item(next));
+                lastReturned = next;
+                next = ArrayLinkedList.this.next[next];
+                nextIndex++;
+            }
+            checkForComodification();
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    //返回一个从后往前的迭代器
+    public Iterator<E> descendingIterator() {
+        return new DescendingIterator();
+    }
+
+    //一个从后往前的列表迭代器
+    private class DescendingIterator implements Iterator<E> {
+        private final ListItr itr = new ListItr(size());
+        public boolean hasNext() {
+            return itr.hasPrevious();
+        }
+        public E next() {
+            return itr.previous();
+        }
+        public void remove() {
+            itr.remove();
+        }
+    }
+
+    //遍历所有节点，沿着槽位链表遍历，不创建迭代器
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        for (int x = first; x != NIL && modCount == expectedModCount; x = next[x])
+            action.accept(item(x));
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArrayLinkedList<E> superClone() {
+        try {
+            return (ArrayLinkedList<E>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    //克隆ArrayLinkedList，直接复制三个数组，槽位布局与原链表相同
+    public Object clone() {
+        ArrayLinkedList<E> clone = superClone();
+        clone.items = Arrays.copyOf(items, top);
+        clone.next = Arrays.copyOf(next, top);
+        clone.prev = Arrays.copyOf(prev, top);
+        clone.modCount = 0;
+        return clone;
+    }
+
+    //生成一个存有链表中所有节点值的数组
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        int i = 0;
+        for (int x = first; x != NIL; x = next[x])
+            result[i++] = items[x];
+        return result;
+    }
+
+    //将链表中元素转存至指定泛型数组中
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size)
+            a = (T[])java.lang.reflect.Array.newInstance(
+                    a.getClass().getComponentType(), size);
+        int i = 0;
+        Object[] result = a;
+        for (int x = first; x != NIL; x = next[x])
+            result[i++] = items[x];
+
+        if (a.length > size)
+            a[size] = null;
+
+        return a;
+    }
+
+    //私有方法，将实例序列化，槽位布局不写入流中
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        // Write out any hidden serialization magic
+        s.defaultWriteObject();
+
+        // Write out size
+        s.writeInt(size);
+
+        // Write out all elements in the proper order.
+        for (int x = first; x != NIL; x = next[x])
+            s.writeObject(items[x]);
+    }
+
+    //私有方法，从反序列化中重构实例，节点按顺序存放在槽位[0, size)中
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        // Read in any hidden serialization magic
+        s.defaultReadObject();
+
+        // Read in size
+        int size = s.readInt();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+
+        items = EMPTY_ITEMS;
+        next = prev = EMPTY_LINKS;
+        first = last = free = NIL;
+
+        // Read in all elements in the proper order.
+        for (int i = 0; i < size; i++)
+            linkLast((E)s.readObject());
+    }
+
+    //返回一个分割器
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ALLSpliterator<E>(this, -1, 0);
+    }
+
+    //分割器，结构与LinkedList.LLSpliterator相同，用槽位代替节点引用
+    static final class ALLSpliterator<E> implements Spliterator<E> {
+        static final int BATCH_UNIT = 1 << 10;  // batch array size increment
+        static final int MAX_BATCH = 1 << 25;  // max batch array size;
+        final ArrayLinkedList<E> list; // null OK unless traversed
+        //当前节点的槽位
+        int current;          // current slot; NIL until initialized
+        //记录未被操作节点个数，若等于-1，则是所有节点都未被操作
+        int est;              // size estimate; -1 until first needed
+        int expectedModCount; // initialized when est set
+        //每次批处理长度
+        int batch;            // batch size for splits
+
+        ALLSpliterator(ArrayLinkedList<E> list, int est, int expectedModCount) {
+            this.list = list;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+            this.current = NIL;
+        }
+
+        final int getEst() {
+            int s; // force initialization
+            final ArrayLinkedList<E> lst;
+            if ((s = est) < 0) {
+                if ((lst = list) == null)
+                    s = est = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    current = lst.first;
+                    s = est = lst.size;
+                }
+            }
+            return s;
+        }
+
+        public long estimateSize() { return (long) getEst(); }
+
+        public Spliterator<E> trySplit() {
+            int p;
+            int s = getEst();
+            if (s > 1 && (p = current) != NIL) {
+                int n = batch + BATCH_UNIT;
+                if (n > s)
+                    n = s;
+                if (n > MAX_BATCH)
+                    n = MAX_BATCH;
+                Object[] a = new Object[n];
+                final Object[] items = list.items;
+                final int[] next = list.next;
+                int j = 0;
+                do { a[j++] = items[p]; } while ((p = next[p]) != NIL && j < n);
+                current = p;
+                batch = j;
+                est = s - j;
+                return Spliterators.spliterator(a, 0, j, Spliterator.ORDERED);
+            }
+            return null;
+        }
+
+        public void forEachRemaining(Consumer<? super E> action) {
+            int p; int n;
+            if (action == null) throw new NullPointerException();
+            if ((n = getEst()) > 0 && (p = current) != NIL) {
+                current = NIL;
+                est = 0;
+                final Object[] items = list.items;
+                final int[] next = list.next;
+                do {
+                    @SuppressWarnings("unchecked") E e = (E) items[p];
+                    p = next[p];
+                    action.accept(e);
+                } while (p != NIL && --n > 0);
+            }
+            if (list.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        public boolean tryAdvance(Consumer<? super E> action) {
+            int p;
+            if (action == null) throw new NullPointerException();
+            if (getEst() > 0 && (p = current) != NIL) {
+                --est;
+                @SuppressWarnings("unchecked") E e = (E) list.items[p];
+                current = list.next[p];
+                action.accept(e);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 
 package java.util;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
 import sun.misc.SharedSecrets;
 
@@ -30,6 +34,16 @@ public class ArrayList<E> extends AbstractList<E>
     //记录ArrayList元素个数
     private int size;
 
+    //扩容策略，grow方法根据它计算新容量，null表示默认策略（与原来一样扩大50%）
+    //不参与序列化，反序列化后恢复为默认策略
+    private transient GrowthPolicy growthPolicy;
+
+    //操作计数器，默认为null即不计数，见ListMetrics
+    transient ListMetrics metrics;
+
+    //自动缩容的状态，null表示不自动缩容（默认），见setAutoShrink
+    private transient AutoShrink autoShrink;
+
 
     //传入int类型变量时，创建一个初始容量为initialCapacity、空的ArrayList
     public ArrayList(int initialCapacity) {
@@ -43,6 +57,12 @@ public class ArrayList<E> extends AbstractList<E>
         }
     }
 
+    //传入初始容量和扩容策略，创建一个使用该策略扩容的空ArrayList
+    public ArrayList(int initialCapacity, GrowthPolicy growthPolicy) {
+        this(initialCapacity);
+        setGrowthPolicy(growthPolicy);
+    }
+
     //不传参构造时，构建一个初始容量为默认容量10、空的ArrayList
     //（第一次add时，elementData才会被扩容为默认容量10）
     public ArrayList() {
@@ -66,6 +86,8 @@ public class ArrayList<E> extends AbstractList<E>
     public void trimToSize() {
         //修改次数加一，这里时fail-fast机制
         modCount++;
+        //同时释放removeIf复用的位图
+        removeScratch = null;
         //如果ArrayList的实际元素个数小于存储元素数组长度，则对数组进行修剪
         if (size < elementData.length) {
             //若实际元素个数为0，则将对象存储数组设置为空数组
@@ -131,22 +153,37 @@ public class ArrayList<E> extends AbstractList<E>
     private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
 
 
-    //扩容算法，数组长度扩大50%，以保证能装下minCapacity个元素
+    //扩容算法，新容量由扩容策略growthPolicy决定（默认扩大50%），以保证能装下minCapacity个元素
     private void grow(int minCapacity) {
         // overflow-conscious code
         //记录未扩容前容量
         int oldCapacity = elementData.length;
-        //oldCapacity>>1实际时oldCapacity的二分之一向下取整，所以新容量比旧容量大百分50
-        int newCapacity = oldCapacity + (oldCapacity >> 1);
-        //如果这个扩容50%后的容量仍下于最小所需容量，则将新容量设置为最小所需容量
+        //由扩容策略计算新容量，默认策略为oldCapacity + (oldCapacity >> 1)，即扩大50%
+        GrowthPolicy policy = growthPolicy;
+        if (policy == null)
+            policy = GrowthPolicy.DEFAULT;
+        int newCapacity = policy.newCapacity(oldCapacity, minCapacity);
+        //如果扩容策略给出的容量仍下于最小所需容量，则将新容量设置为最小所需容量
         if (newCapacity - minCapacity < 0)
             newCapacity = minCapacity;
         //如果新容量大于数组缓冲区最大存储容量，则用hugeCapacity最大化容量
         if (newCapacity - MAX_ARRAY_SIZE > 0)
             newCapacity = hugeCapacity(minCapacity);
+        //扩容说明列表仍需要更大的容量，自动缩容重新计数
+        AutoShrink as = autoShrink;
+        if (as != null)
+            as.lowWaterCount = 0;
+        //开启计数时记录扩容次数和本次需要复制的元素个数，见ListMetrics
+        ListMetrics m = metrics;
+        if (m != null)
+            m.recordGrow(size);
+        //开启JFR事件时记录扩容前后的容量和复制耗时，见ListEvents
+        Object event = ListEvents.beginGrow();
         // minCapacity is usually close to size, so this is a win:
         //将原数组复制到长度为新容量的新数组中
         elementData = Arrays.copyOf(elementData, newCapacity);
+        if (event != null)
+            ListEvents.commitGrow(event, this, oldCapacity, newCapacity, size);
     }
 
     //对存储元素数组进行大容量分配，最大分配 Integer.MAX_VALUE
@@ -161,6 +198,232 @@ public class ArrayList<E> extends AbstractList<E>
                 MAX_ARRAY_SIZE;
     }
 
+    //返回当前使用的扩容策略
+    public GrowthPolicy growthPolicy() {
+        GrowthPolicy policy = growthPolicy;
+        return (policy == null) ? GrowthPolicy.DEFAULT : policy;
+    }
+
+    //更换扩容策略，只影响之后的扩容，不会改变当前数组长度
+    //扩容次数和复制的元素个数由ListMetrics统计，见setMetrics
+    public void setGrowthPolicy(GrowthPolicy growthPolicy) {
+        Objects.requireNonNull(growthPolicy);
+        this.growthPolicy = (growthPolicy == GrowthPolicy.DEFAULT) ? null : growthPolicy;
+    }
+
+    /*
+        开启或关闭自动缩容，delay为0时关闭，小于0时抛出IllegalArgumentException异常。
+        开启后每次删除操作（remove、clear、removeRange、removeAll、retainAll、removeIf）检查一次：
+        删除之前的元素个数不足容量的1/4时计数加一，否则清零，扩容时也清零；
+        连续delay次都不足1/4时，将数组缩小为这期间最大元素个数的两倍（不小于默认容量10）。
+        判断用删除之前的元素个数，并且要求连续多次，所以clear后马上重新装满的复用列表不会反复扩容缩容；
+        新容量留出一倍余量，缩容后立即add也不会马上扩容。
+        自动缩容的状态和统计放在单独的AutoShrink对象中，开启时才创建，关闭时丢弃，
+        所以未开启的列表只多一个null字段；重新开启时统计从0开始。
+    */
+    public void setAutoShrink(int delay) {
+        if (delay < 0)
+            throw new IllegalArgumentException("Illegal shrink delay: " + delay);
+        autoShrink = (delay == 0) ? null : new AutoShrink(delay);
+    }
+
+    //返回自动缩容的延迟，0表示未开启
+    public int autoShrinkDelay() {
+        AutoShrink as = autoShrink;
+        return (as == null) ? 0 : as.delay;
+    }
+
+    //返回数组中未使用的长度，即容量减去元素个数
+    public int retainedSlack() {
+        return elementData.length - size;
+    }
+
+    //返回开启自动缩容以来的缩容次数，未开启时返回0
+    public long shrinkCount() {
+        AutoShrink as = autoShrink;
+        return (as == null) ? 0 : as.shrinkCount;
+    }
+
+    //返回开启自动缩容以来累计释放的数组长度，未开启时返回0
+    public long releasedCapacity() {
+        AutoShrink as = autoShrink;
+        return (as == null) ? 0 : as.releasedCapacity;
+    }
+
+    //自动缩容的状态和统计，只有开启自动缩容的列表才有
+    private static final class AutoShrink {
+        //连续多少次删除操作都发现元素个数不足容量的1/4时才缩容
+        final int delay;
+
+        //连续发现元素个数不足容量1/4的删除操作次数，扩容或元素个数回升时清零
+        int lowWaterCount;
+
+        //这些删除操作之前的最大元素个数，缩容时按它的两倍分配新数组
+        int lowWaterPeak;
+
+        //记录自动缩容次数
+        long shrinkCount;
+
+        //记录自动缩容释放的数组长度总和
+        long releasedCapacity;
+
+        AutoShrink(int delay) {
+            this.delay = delay;
+        }
+    }
+
+    //删除操作之后调用，oldSize为删除之前的元素个数，只在开启自动缩容（autoShrink不为null）时调用
+    private void shrinkIfIdle(int oldSize) {
+        AutoShrink as = autoShrink;
+        int capacity = elementData.length;
+        if (capacity <= DEFAULT_CAPACITY || oldSize > (capacity >> 2)) {
+            as.lowWaterCount = 0;
+            as.lowWaterPeak = 0;
+            return;
+        }
+        if (oldSize > as.lowWaterPeak)
+            as.lowWaterPeak = oldSize;
+        if (++as.lowWaterCount < as.delay)
+            return;
+        //lowWaterPeak不超过容量的1/4，新容量不超过原容量的一半
+        int newCapacity = Math.max(as.lowWaterPeak << 1, DEFAULT_CAPACITY);
+        as.lowWaterCount = 0;
+        as.lowWaterPeak = 0;
+        if (newCapacity >= capacity)
+            return;
+        //迭代器每次都重新读取elementData，只替换数组不是结构修改，modCount不变
+        elementData = Arrays.copyOf(elementData, newCapacity);
+        trimRemoveScratch();
+        as.shrinkCount++;
+        as.releasedCapacity += capacity - newCapacity;
+    }
+
+    //返回当前的操作计数器，未开启时返回null
+    public ListMetrics metrics() {
+        return metrics;
+    }
+
+    /*
+        为该ArrayList开启（metrics不为null）或关闭（metrics为null）操作计数。
+        开关放在实例上而不是读取系统属性的静态常量，因为ArrayList在虚拟机启动早期就被使用，那时还不能安全地读取系统属性；
+        关闭时热点路径上只多一次null判断。
+    */
+    public void setMetrics(ListMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    //记录一次ConcurrentModificationException，并返回该异常供调用方抛出
+    ConcurrentModificationException comodification() {
+        ListMetrics m = metrics;
+        if (m != null)
+            m.recordComodification();
+        return new ConcurrentModificationException();
+    }
+
+    /*
+        扩容策略接口，grow方法通过newCapacity方法计算扩容后的数组长度。
+        newCapacity返回值小于minCapacity时，grow方法会使用minCapacity；
+        返回值超过MAX_ARRAY_SIZE时，grow方法会交给hugeCapacity处理，
+        所以实现类只需要保证不溢出成负数即可（超出int范围时返回Integer.MAX_VALUE）。
+        注意：ArrayList在虚拟机启动时就会被使用，这里的实现都用内部类而不用lambda表达式
+    */
+    public interface GrowthPolicy {
+
+        //计算新容量，oldCapacity为扩容前数组长度，minCapacity为最小所需容量
+        int newCapacity(int oldCapacity, int minCapacity);
+
+        //默认策略，即原来的扩大50%
+        GrowthPolicy DEFAULT = new HalfGrowth();
+
+        //每次扩容都扩大为原来的2倍，扩容次数更少，但最多有一半的空间闲置
+        static GrowthPolicy doubling() {
+            return new DoublingGrowth();
+        }
+
+        //每次扩容固定增加increment个位置，闲置空间有上限，但扩容次数与元素个数成正比
+        static GrowthPolicy fixedIncrement(int increment) {
+            if (increment <= 0)
+                throw new IllegalArgumentException("Illegal increment: " + increment);
+            return new FixedIncrementGrowth(increment);
+        }
+
+        //按尺寸等级扩容，数组长度只会落在有限的几种规格上，闲置空间不超过约25%
+        static GrowthPolicy sizeClass() {
+            return new SizeClassGrowth();
+        }
+
+        //按预期元素个数扩容：第一次扩容直接扩大到expectedSize，之后退回默认的50%扩容
+        static GrowthPolicy exactHint(int expectedSize) {
+            if (expectedSize < 0)
+                throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+            return new ExactHintGrowth(expectedSize);
+        }
+    }
+
+    //将long类型容量限制在int范围内，防止溢出成负数
+    private static int clampCapacity(long capacity) {
+        return (capacity > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) capacity;
+    }
+
+    //默认扩容策略，oldCapacity>>1实际是oldCapacity的二分之一向下取整，所以新容量比旧容量大百分50
+    static final class HalfGrowth implements GrowthPolicy {
+        public int newCapacity(int oldCapacity, int minCapacity) {
+            return clampCapacity((long) oldCapacity + (oldCapacity >> 1));
+        }
+    }
+
+    //翻倍扩容策略
+    static final class DoublingGrowth implements GrowthPolicy {
+        public int newCapacity(int oldCapacity, int minCapacity) {
+            return clampCapacity((long) oldCapacity << 1);
+        }
+    }
+
+    //固定增量扩容策略
+    static final class FixedIncrementGrowth implements GrowthPolicy {
+        private final int increment;
+
+        FixedIncrementGrowth(int increment) {
+            this.increment = increment;
+        }
+
+        public int newCapacity(int oldCapacity, int minCapacity) {
+            return clampCapacity((long) oldCapacity + increment);
+        }
+    }
+
+    /*
+        尺寸等级扩容策略：先按50%计算出目标容量，再向上取整到所在尺寸等级。
+        每个2的幂区间[2^k, 2^(k+1))被均分为4个等级，最小等级为16，
+        这样数组长度总落在有限的几种规格上，更容易被分配器复用。
+    */
+    static final class SizeClassGrowth implements GrowthPolicy {
+        public int newCapacity(int oldCapacity, int minCapacity) {
+            long target = Math.max((long) oldCapacity + (oldCapacity >> 1), minCapacity);
+            if (target <= 16)
+                return 16;
+            //步长为target最高位的四分之一
+            long step = Long.highestOneBit(target) >> 2;
+            return clampCapacity((target + step - 1) & -step);
+        }
+    }
+
+    //预期容量扩容策略，适合能事先估计元素个数、但无法在构造时就给出初始容量的场景
+    static final class ExactHintGrowth implements GrowthPolicy {
+        private final int expectedSize;
+
+        ExactHintGrowth(int expectedSize) {
+            this.expectedSize = expectedSize;
+        }
+
+        public int newCapacity(int oldCapacity, int minCapacity) {
+            //还没达到预期容量时，直接扩容到预期容量；装满之后按默认的50%扩容
+            return (oldCapacity < expectedSize)
+                    ? expectedSize
+                    : GrowthPolicy.DEFAULT.newCapacity(oldCapacity, minCapacity);
+        }
+    }
+
     //返回ArrayList中实际存储的元素个数
     public int size() {
         return size;
@@ -214,6 +477,11 @@ public class ArrayList<E> extends AbstractList<E>
             ArrayList<?> v = (ArrayList<?>) super.clone();
             v.elementData = Arrays.copyOf(elementData, size);
             v.modCount = 0;
+            v.removeScratch = null;
+            v.metrics = null;
+            //克隆沿用自动缩容的设置，但状态和统计从0开始
+            if (autoShrink != null)
+                v.autoShrink = new AutoShrink(autoShrink.delay);
             return v;
         } catch (CloneNotSupportedException e) {
             // this shouldn't happen, since we are Cloneable
@@ -291,8 +559,13 @@ public class ArrayList<E> extends AbstractList<E>
             这时elementData[index]==elementData[index+1],就将index位置之后元素都往后移动了一位，
             最后再用传入的新元素覆盖element[index]的值，达到插入指定位置的目的
         */
+        Object event = ListEvents.beginShift(size - index);
         System.arraycopy(elementData, index, elementData, index + 1,
                 size - index);
+        if (event != null)
+            ListEvents.commitShift(event, this, "add", index, size - index);
+        if (metrics != null)
+            metrics.recordShift(size - index);
         elementData[index] = element;
         size++;
     }
@@ -306,14 +579,21 @@ public class ArrayList<E> extends AbstractList<E>
 
         //计算删除元素后，所需往前移动的元素个数
         int numMoved = size - index - 1;
+        Object event = ListEvents.beginShift(numMoved);
         if (numMoved > 0)
             //将elementData[index+1]->elementData[(index+1)+numMoved-1]位置元素复制，
             //放到element[index]->element[index+numMoved-1]位置上，
             //这样就把element[index]值覆盖删除，同时后面元素都往前移动
             System.arraycopy(elementData, index+1, elementData, index,
                     numMoved);
+        if (event != null)
+            ListEvents.commitShift(event, this, "remove", index, numMoved);
+        if (metrics != null)
+            metrics.recordShift(numMoved);
         //将element[size-1]位置元素赋值null，同时记录元素个数值size减一
         elementData[--size] = null; // clear to let GC do its work
+        if (autoShrink != null)
+            shrinkIfIdle(size + 1);
 
         return oldValue;
     }
@@ -342,10 +622,17 @@ public class ArrayList<E> extends AbstractList<E>
     private void fastRemove(int index) {
         modCount++;
         int numMoved = size - index - 1;
+        Object event = ListEvents.beginShift(numMoved);
         if (numMoved > 0)
             System.arraycopy(elementData, index+1, elementData, index,
                     numMoved);
+        if (event != null)
+            ListEvents.commitShift(event, this, "remove", index, numMoved);
+        if (metrics != null)
+            metrics.recordShift(numMoved);
         elementData[--size] = null; // clear to let GC do its work
+        if (autoShrink != null)
+            shrinkIfIdle(size + 1);
     }
 
     //清空ArrayList中所有元素
@@ -356,8 +643,13 @@ public class ArrayList<E> extends AbstractList<E>
         //遍历数组，将所有值都赋值为null
         for (int i = 0; i < size; i++)
             elementData[i] = null;
+        final int oldSize = size;
         //将记录元素个数的值赋值为0
         size = 0;
+        //同时释放removeIf复用的位图，清空后的列表不再占用按峰值大小分配的位图
+        removeScratch = null;
+        if (autoShrink != null)
+            shrinkIfIdle(oldSize);
     }
 
     //将传入集合中的所有元素添加到ArrayList中
@@ -375,6 +667,24 @@ public class ArrayList<E> extends AbstractList<E>
         return numNew != 0;
     }
 
+    //将数组a中前n个元素添加到末尾，不像addAll那样先复制一份数组，供ListCodec分批解码时使用
+    void appendAll(Object[] a, int n) {
+        ensureCapacityInternal(size + n);  // Increments modCount
+        System.arraycopy(a, 0, elementData, size, n);
+        size += n;
+    }
+
+    //取出长度正好为size的元素数组（数组长度等于size时不复制），并把列表重置为空，供SnapshotArrayList.mutate发布修改结果
+    Object[] detachArray() {
+        Object[] a = elementData;
+        if (a.length != size)
+            a = Arrays.copyOf(a, size);
+        elementData = EMPTY_ELEMENTDATA;
+        size = 0;
+        modCount++;
+        return a;
+    }
+
     //将传入集合中所有元素插入到ArrayList指定位置
     public boolean addAll(int index, Collection<? extends E> c) {
         rangeCheckForAdd(index);
@@ -385,11 +695,16 @@ public class ArrayList<E> extends AbstractList<E>
 
         //记录插入集合中所有元素后，需要移动原有元素个数
         int numMoved = size - index;
+        Object event = ListEvents.beginShift(numMoved);
         if (numMoved > 0)
             //将elementData[index]->element[index+numMoved-1]位置元素复制，
             //放到elementData[index+numNew]开始位置上
             System.arraycopy(elementData, index, elementData, index + numNew,
                     numMoved);
+        if (event != null)
+            ListEvents.commitShift(event, this, "addAll", index, numMoved);
+        if (metrics != null)
+            metrics.recordShift(numMoved);
 
         //将a[0]->a[0+numNew-1]位置元素复制，
         //放到elementData[index]开始位置上,
@@ -403,15 +718,23 @@ public class ArrayList<E> extends AbstractList<E>
     protected void removeRange(int fromIndex, int toIndex) {
         modCount++;
         int numMoved = size - toIndex;
+        Object event = ListEvents.beginShift(numMoved);
         System.arraycopy(elementData, toIndex, elementData, fromIndex,
                 numMoved);
+        if (event != null)
+            ListEvents.commitShift(event, this, "removeRange", fromIndex, numMoved);
+        if (metrics != null)
+            metrics.recordShift(numMoved);
 
         // clear to let GC do its work
         int newSize = size - (toIndex-fromIndex);
         for (int i = newSize; i < size; i++) {
             elementData[i] = null;
         }
+        final int oldSize = size;
         size = newSize;
+        if (autoShrink != null)
+            shrinkIfIdle(oldSize);
     }
 
     //检查传入下标是否超过ArrayList容量
@@ -444,8 +767,32 @@ public class ArrayList<E> extends AbstractList<E>
         return batchRemove(c, true);
     }
 
+    //参数集合元素个数达到这个值时，batchRemove改用哈希查找
+    static final int HASH_LOOKUP_THRESHOLD = 32;
+
+    /*
+        为removeAll/retainAll准备用来查找的集合。
+        c是List时，contains是线性查找，每个元素都调用一次，总开销为O(n*m)；
+        这时把c中元素放进一个临时的HashSet，contains变为O(1)，总开销降为O(n+m)。
+        List的contains本来就是按equals判断的，只要元素的hashCode与equals一致，结果就不变。
+        c是Set或者其他集合时，contains可能有自己的语义（比如TreeSet用比较器），所以原样返回。
+        元素个数太少时，建HashSet反而更慢，也原样返回。
+        HashSet在修改列表之前就建好，元素的hashCode抛出异常时列表不会被修改。
+    */
+    static Collection<?> batchLookup(Collection<?> c, int size) {
+        if (c instanceof List
+                && size >= 8
+                && c.size() >= HASH_LOOKUP_THRESHOLD)
+            return new HashSet<>(c);
+        return c;
+    }
+
     //删除指定元素
     private boolean batchRemove(Collection<?> c, boolean complement) {
+        //参数是较大的List时，先转成HashSet
+        c = batchLookup(c, size);
+        Object event = ListEvents.beginBulk();
+        final int oldSize = size;
         final Object[] elementData = this.elementData;
         //r记录存储元素数组下标，w记录要保留元素的个数
         int r = 0, w = 0;
@@ -463,6 +810,9 @@ public class ArrayList<E> extends AbstractList<E>
             // Preserve behavioral compatibility with AbstractCollection,
             // even if c.contains() throws.
             //保留与AbstractCollection的行为兼容性，防止c.contains（）引发异常导致的操作停止。
+            //r即为调用c.contains的次数
+            if (metrics != null)
+                metrics.recordBatchRemove(r);
             if (r != size) {
                 //将下标r之后的所有元素复制往前移动到下标w保留元素位置之后
                 System.arraycopy(elementData, r,
@@ -483,6 +833,10 @@ public class ArrayList<E> extends AbstractList<E>
                 modified = true;
             }
         }
+        if (event != null)
+            ListEvents.commitBulk(event, this, complement ? "retainAll" : "removeAll", oldSize, size);
+        if (modified && autoShrink != null)
+            shrinkIfIdle(oldSize);
         return modified;
     }
 
@@ -502,7 +856,7 @@ public class ArrayList<E> extends AbstractList<E>
         }
 
         if (modCount != expectedModCount) {
-            throw new ConcurrentModificationException();
+            throw comodification();
         }
     }
 
@@ -510,6 +864,7 @@ public class ArrayList<E> extends AbstractList<E>
     private void readObject(java.io.ObjectInputStream s)
             throws java.io.IOException, ClassNotFoundException {
         elementData = EMPTY_ELEMENTDATA;
+        growthPolicy = null;
 
         // Read in size, and any hidden stuff
         s.defaultReadObject();
@@ -574,7 +929,7 @@ public class ArrayList<E> extends AbstractList<E>
             Object[] elementData = ArrayList.this.elementData;
             //如果下一个元素坐标大于存储元素数组长度，也抛出异常
             if (i >= elementData.length)
-                throw new ConcurrentModificationException();
+                throw comodification();
             //下一个元素索引加一
             cursor = i + 1;
             //返回元素，且将lastRet更改为这个被读取的元素下标
@@ -600,7 +955,7 @@ public class ArrayList<E> extends AbstractList<E>
                 //更新迭代器中记录modCount域的值（因为执行删除操作后，ArrayList的modCount域会改变）
                 expectedModCount = modCount;
             } catch (IndexOutOfBoundsException ex) {
-                throw new ConcurrentModificationException();
+                throw comodification();
             }
         }
 
@@ -618,7 +973,7 @@ public class ArrayList<E> extends AbstractList<E>
             }
             final Object[] elementData = ArrayList.this.elementData;
             if (i >= elementData.length) {
-                throw new ConcurrentModificationException();
+                throw comodification();
             }
             //当下标i小于size，且无其他线程修改list中元素时，
             //不断读取元素，且用accept方法操作每个读取的元素
@@ -637,7 +992,7 @@ public class ArrayList<E> extends AbstractList<E>
         //只要list中修改次数与迭代器中记录的修改次数不一样，则抛出异常
         final void checkForComodification() {
             if (modCount != expectedModCount)
-                throw new ConcurrentModificationException();
+                throw comodification();
         }
     }
 
@@ -676,7 +1031,7 @@ public class ArrayList<E> extends AbstractList<E>
                 throw new NoSuchElementException();
             Object[] elementData = ArrayList.this.elementData;
             if (i >= elementData.length)
-                throw new ConcurrentModificationException();
+                throw comodification();
             //将下一个要读取的元素的下标更新为前一个元素，使其重新开始从前一个元素开始迭代
             cursor = i;
             return (E) elementData[lastRet = i];
@@ -691,7 +1046,7 @@ public class ArrayList<E> extends AbstractList<E>
             try {
                 ArrayList.this.set(lastRet, e);
             } catch (IndexOutOfBoundsException ex) {
-                throw new ConcurrentModificationException();
+                throw comodification();
             }
         }
 
@@ -710,7 +1065,7 @@ public class ArrayList<E> extends AbstractList<E>
                 //更新迭代器内记录list修改次数的值
                 expectedModCount = modCount;
             } catch (IndexOutOfBoundsException ex) {
-                throw new ConcurrentModificationException();
+                throw comodification();
             }
         }
     }
@@ -852,7 +1207,7 @@ public class ArrayList<E> extends AbstractList<E>
                         throw new NoSuchElementException();
                     Object[] elementData = ArrayList.this.elementData;
                     if (offset + i >= elementData.length)
-                        throw new ConcurrentModificationException();
+                        throw comodification();
                     cursor = i + 1;
                     return (E) elementData[offset + (lastRet = i)];
                 }
@@ -869,7 +1224,7 @@ public class ArrayList<E> extends AbstractList<E>
                         throw new NoSuchElementException();
                     Object[] elementData = ArrayList.this.elementData;
                     if (offset + i >= elementData.length)
-                        throw new ConcurrentModificationException();
+                        throw comodification();
                     cursor = i;
                     return (E) elementData[offset + (lastRet = i)];
                 }
@@ -884,7 +1239,7 @@ public class ArrayList<E> extends AbstractList<E>
                     }
                     final Object[] elementData = ArrayList.this.elementData;
                     if (offset + i >= elementData.length) {
-                        throw new ConcurrentModificationException();
+                        throw comodification();
                     }
                     while (i != size && modCount == expectedModCount) {
                         consumer.accept((E) elementData[offset + (i++)]);
@@ -913,7 +1268,7 @@ public class ArrayList<E> extends AbstractList<E>
                         lastRet = -1;
                         expectedModCount = ArrayList.this.modCount;
                     } catch (IndexOutOfBoundsException ex) {
-                        throw new ConcurrentModificationException();
+                        throw comodification();
                     }
                 }
 
@@ -925,7 +1280,7 @@ public class ArrayList<E> extends AbstractList<E>
                     try {
                         ArrayList.this.set(offset + lastRet, e);
                     } catch (IndexOutOfBoundsException ex) {
-                        throw new ConcurrentModificationException();
+                        throw comodification();
                     }
                 }
 
@@ -939,13 +1294,13 @@ public class ArrayList<E> extends AbstractList<E>
                         lastRet = -1;
                         expectedModCount = ArrayList.this.modCount;
                     } catch (IndexOutOfBoundsException ex) {
-                        throw new ConcurrentModificationException();
+                        throw comodification();
                     }
                 }
 
                 final void checkForComodification() {
                     if (expectedModCount != ArrayList.this.modCount)
-                        throw new ConcurrentModificationException();
+                        throw comodification();
                 }
             };
         }
@@ -976,7 +1331,7 @@ public class ArrayList<E> extends AbstractList<E>
         //fast-fail机制
         private void checkForComodification() {
             if (ArrayList.this.modCount != this.modCount)
-                throw new ConcurrentModificationException();
+                throw comodification();
         }
 
         //返回一个子列表的分割器
@@ -999,7 +1354,7 @@ public class ArrayList<E> extends AbstractList<E>
             action.accept(elementData[i]);
         }
         if (modCount != expectedModCount) {
-            throw new ConcurrentModificationException();
+            throw comodification();
         }
     }
 
@@ -1074,7 +1429,7 @@ public class ArrayList<E> extends AbstractList<E>
                 //元素应用传入的规则
                 action.accept(e);
                 if (list.modCount != expectedModCount)
-                    throw new ConcurrentModificationException();
+                    throw list.comodification();
                 //返回true证明可能还有元素未处理
                 return true;
             }
@@ -1106,7 +1461,7 @@ public class ArrayList<E> extends AbstractList<E>
                         return;
                 }
             }
-            throw new ConcurrentModificationException();
+            throw (list != null) ? list.comodification() : new ConcurrentModificationException();
         }
 
         //返回分割器中未处理元素个数
@@ -1123,56 +1478,85 @@ public class ArrayList<E> extends AbstractList<E>
     @Override
     public boolean removeIf(Predicate<? super E> filter) {
         Objects.requireNonNull(filter);
+        Object event = ListEvents.beginBulk();
         // figure out which elements are to be removed
         // any exception thrown from the filter predicate at this stage
         // will leave the collection unmodified
-        //记录需要删除元素的个数
-        int removeCount = 0;
-        //用来放置满足条件元素的下标
-        final BitSet removeSet = new BitSet(size);
         final int expectedModCount = modCount;
+        final Object[] elementData = this.elementData;
         final int size = this.size;
-        for (int i=0; modCount == expectedModCount && i < size; i++) {
-            @SuppressWarnings("unchecked")
-            final E element = (E) elementData[i];
-            //测试元素是否符合传入规则，若是则将bitSet中下标为i的数设置为true
-            //同时删除数目加一;bitSet中每一位默认值都为false（0）
-            if (filter.test(element)) {
-                removeSet.set(i);
-                //记录删除元素个数的变量值加一
-                removeCount++;
-            }
+        //先找到第一个要删除的元素，在此之前不需要记录任何东西，所以没有元素满足条件时不会分配内存
+        int i = 0;
+        for (; modCount == expectedModCount && i < size; i++) {
+            @SuppressWarnings("unchecked") final E element = (E) elementData[i];
+            if (filter.test(element))
+                break;
         }
         if (modCount != expectedModCount) {
-            throw new ConcurrentModificationException();
+            throw comodification();
+        }
+        if (i >= size) {
+            if (event != null)
+                ListEvents.commitBulk(event, this, "removeIf", size, size);
+            return false;
         }
 
-        // shift surviving elements left over the spaces left by removed elements
-        //用来判断是否有要删除的元素
-        final boolean anyToRemove = removeCount > 0;
-        if (anyToRemove) {
-            //删除元素后，剩余的元素个数
-            final int newSize = size - removeCount;
-            for (int i=0, j=0; (i < size) && (j < newSize); i++, j++) {
-                //nextClearBit方法：若该下标本身值为false，则返回传入自身下标，
-                //若不为false，则继续往下寻找，直到有一个值为false，返回该值下标
-                //这个方法可以获取到不需要删除元素的下标
-                i = removeSet.nextClearBit(i);
-                //将要保留下来的元素不断往前覆盖，达到删除的效果
-                elementData[j] = elementData[i];
-            }
-            //对空元素进行赋值null处理
-            for (int k=newSize; k < size; k++) {
-                elementData[k] = null;  // Let gc do its work
-            }
-            this.size = newSize;
-            if (modCount != expectedModCount) {
-                throw new ConcurrentModificationException();
-            }
-            modCount++;
+        //从第一个要删除的元素beg开始，用位图记录要删除的元素，第k位对应下标beg+k
+        //位图复用上一次removeIf留下的数组，只有不够长时才重新分配
+        final int beg = i;
+        final long[] deathRow = takeRemoveScratch((size - beg + 63) >>> 6);
+        deathRow[0] = 1L;   // set bit 0
+        for (i = beg + 1; modCount == expectedModCount && i < size; i++) {
+            @SuppressWarnings("unchecked") final E element = (E) elementData[i];
+            if (filter.test(element))
+                deathRow[(i - beg) >>> 6] |= 1L << (i - beg);
         }
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+
+        // shift surviving elements left over the spaces left by removed elements
+        //将要保留下来的元素不断往前覆盖，达到删除的效果
+        int w = beg;
+        for (i = beg; i < size; i++)
+            if ((deathRow[(i - beg) >>> 6] & (1L << (i - beg))) == 0)
+                elementData[w++] = elementData[i];
+        //对空元素进行赋值null处理
+        for (i = w; i < size; i++)
+            elementData[i] = null;  // Let gc do its work
+        this.size = w;
+        removeScratch = deathRow;
+        modCount++;
+        if (event != null)
+            ListEvents.commitBulk(event, this, "removeIf", size, w);
+        if (autoShrink != null)
+            shrinkIfIdle(size);
+        return true;
+    }
+
+    //removeIf使用的位图，调用之间复用，避免每次调用都分配内存
+    //长度不超过覆盖整个数组所需的long个数，clear时释放，缩容时超出新容量的部分随之释放
+    private transient long[] removeScratch;
+
+    //数组缩小后，位图比覆盖新数组所需的更长时释放它，下次removeIf按新的大小分配
+    private void trimRemoveScratch() {
+        long[] bits = removeScratch;
+        if (bits != null && bits.length > ((elementData.length + 63) >>> 6))
+            removeScratch = null;
+    }
 
-        return anyToRemove;
+    /*
+        取出复用的位图并清零前words个元素，不够长时重新分配。
+        取出后将removeScratch置为null，直到removeIf正常结束才放回，
+        这样filter中再调用removeIf时会使用自己的位图，不会互相覆盖。
+    */
+    private long[] takeRemoveScratch(int words) {
+        long[] bits = removeScratch;
+        removeScratch = null;
+        if (bits == null || bits.length < words)
+            return new long[words];
+        Arrays.fill(bits, 0, words, 0L);
+        return bits;
     }
 
     //按照传入的规则将ArrayList中的元素进行替换
@@ -1200,7 +1584,7 @@ public class ArrayList<E> extends AbstractList<E>
             elementData[i] = operator.apply((E) elementData[i]);
         }
         if (modCount != expectedModCount) {
-            throw new ConcurrentModificationException();
+            throw comodification();
         }
         modCount++;
     }
@@ -1210,10 +1594,327 @@ public class ArrayList<E> extends AbstractList<E>
     @SuppressWarnings("unchecked")
     public void sort(Comparator<? super E> c) {
         final int expectedModCount = modCount;
+        Object event = ListEvents.beginBulk();
         Arrays.sort((E[]) elementData, 0, size, c);
         if (modCount != expectedModCount) {
-            throw new ConcurrentModificationException();
+            throw comodification();
         }
         modCount++;
+        if (event != null)
+            ListEvents.commitBulk(event, this, "sort", size, size);
+    }
+
+    //sort的并行版本，元素个数达到PARALLEL_THRESHOLD时用Arrays.parallelSort在公共ForkJoinPool中排序
+    @SuppressWarnings("unchecked")
+    public void parallelSort(Comparator<? super E> c) {
+        final int expectedModCount = modCount;
+        Object event = ListEvents.beginBulk();
+        if (size < PARALLEL_THRESHOLD)
+            Arrays.sort((E[]) elementData, 0, size, c);
+        else
+            Arrays.parallelSort((E[]) elementData, 0, size, c);
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+        modCount++;
+        if (event != null)
+            ListEvents.commitBulk(event, this, "parallelSort", size, size);
+    }
+
+    /*
+        按int类型的键排序，键相同的元素保持原来的顺序（稳定排序）。
+        先对每个元素调用一次keyExtractor，把键和下标拼成一个long：高32位为键，低32位为下标，
+        然后对long数组做基本类型排序，没有比较器调用；最后按排好的下标重新排列元素。
+        键的符号位取反后再放进高32位，这样无符号的long比较就等于有符号的键比较。
+        keyExtractor抛出异常时列表不会被修改。
+    */
+    public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        final int expectedModCount = modCount;
+        final Object[] elementData = this.elementData;
+        final int size = this.size;
+        long[] packed = new long[size];
+        for (int i = 0; modCount == expectedModCount && i < size; i++) {
+            @SuppressWarnings("unchecked") E e = (E) elementData[i];
+            int key = keyExtractor.applyAsInt(e) ^ Integer.MIN_VALUE;
+            //key已经是无符号顺序，整个long再按有符号排序时需要把最高位取反
+            packed[i] = (((long) key << 32) | i) ^ Long.MIN_VALUE;
+        }
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+        Arrays.sort(packed);
+        Object[] sorted = new Object[size];
+        for (int i = 0; i < size; i++)
+            sorted[i] = elementData[(int) packed[i]];
+        System.arraycopy(sorted, 0, elementData, 0, size);
+        modCount++;
+    }
+
+    /*
+        按long类型的键排序，键相同的元素保持原来的顺序（稳定排序）。
+        先对每个元素调用一次keyExtractor，然后对（键，下标）做LSD基数排序，
+        每次处理键的8位，所有键在这8位上都相同时跳过这一轮，没有比较器调用；最后按排好的下标重新排列元素。
+        keyExtractor抛出异常时列表不会被修改。
+    */
+    public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        final int expectedModCount = modCount;
+        final Object[] elementData = this.elementData;
+        final int size = this.size;
+        long[] keys = new long[size];
+        for (int i = 0; modCount == expectedModCount && i < size; i++) {
+            @SuppressWarnings("unchecked") E e = (E) elementData[i];
+            //符号位取反，使无符号顺序等于有符号顺序
+            keys[i] = keyExtractor.applyAsLong(e) ^ Long.MIN_VALUE;
+        }
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+        int[] order = radixSortIndexes(keys, size);
+        Object[] sorted = new Object[size];
+        for (int i = 0; i < size; i++)
+            sorted[i] = elementData[order[i]];
+        System.arraycopy(sorted, 0, elementData, 0, size);
+        modCount++;
+    }
+
+    //对无符号的键做LSD基数排序，返回按键排好序的原下标，键相同时下标小的在前
+    private static int[] radixSortIndexes(long[] keys, int n) {
+        int[] idx = new int[n], idxTmp = new int[n];
+        long[] k = keys, kTmp = new long[n];
+        for (int i = 0; i < n; i++)
+            idx[i] = i;
+        int[] count = new int[256];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++)
+                count[(int) (k[i] >>> shift) & 0xFF]++;
+            //所有键在这8位上都相同，这一轮不会改变顺序
+            if (n == 0 || count[(int) (k[0] >>> shift) & 0xFF] == n)
+                continue;
+            for (int b = 0, sum = 0; b < 256; b++) {
+                int c = count[b];
+                count[b] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int p = count[(int) (k[i] >>> shift) & 0xFF]++;
+                kTmp[p] = k[i];
+                idxTmp[p] = idx[i];
+            }
+            long[] lt = k; k = kTmp; kTmp = lt;
+            int[] it = idx; idx = idxTmp; idxTmp = it;
+        }
+        return idx;
+    }
+
+    //元素个数小于这个值时，并行版本的方法直接使用对应的单线程方法
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    //并行处理时每个分块的最小元素个数，是64的倍数，保证removeIfParallel中每个long只属于一个分块
+    static final int MIN_PARALLEL_CHUNK = 1 << 12;
+
+    //计算分块大小：每个工作线程大约分到4个分块，向上取整到64的倍数
+    private static int parallelChunkSize(int size, ForkJoinPool pool) {
+        int chunk = size / (pool.getParallelism() << 2);
+        chunk = (chunk + 63) & ~63;
+        return Math.max(chunk, MIN_PARALLEL_CHUNK);
+    }
+
+    //forEach的并行版本，在pool中分块执行action，执行顺序不确定；结束时检查modCount，fail-fast
+    public void forEachParallel(Consumer<? super E> action, ForkJoinPool pool) {
+        Objects.requireNonNull(action);
+        Objects.requireNonNull(pool);
+        final int size = this.size;
+        if (size < PARALLEL_THRESHOLD || pool.getParallelism() == 1) {
+            forEach(action);
+            return;
+        }
+        final int expectedModCount = modCount;
+        int chunk = parallelChunkSize(size, pool);
+        pool.invoke(new ParallelTask(this, ParallelTask.FOR_EACH, action,
+                elementData, size, chunk, 0, (size + chunk - 1) / chunk));
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+    }
+
+    //replaceAll的并行版本，在pool中分块执行operator；结束时检查modCount，fail-fast
+    public void replaceAllParallel(UnaryOperator<E> operator, ForkJoinPool pool) {
+        Objects.requireNonNull(operator);
+        Objects.requireNonNull(pool);
+        final int size = this.size;
+        if (size < PARALLEL_THRESHOLD || pool.getParallelism() == 1) {
+            replaceAll(operator);
+            return;
+        }
+        final int expectedModCount = modCount;
+        int chunk = parallelChunkSize(size, pool);
+        pool.invoke(new ParallelTask(this, ParallelTask.REPLACE, operator,
+                elementData, size, chunk, 0, (size + chunk - 1) / chunk));
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+        modCount++;
+    }
+
+    /*
+        removeIf的并行版本，分两个阶段：
+        1. 在pool中分块执行filter，把要删除的元素下标记录在位图中，同时统计每个分块保留的元素个数。
+           这个阶段不修改列表，filter抛出异常时列表保持不变；
+        2. 对每个分块的保留个数求前缀和，得到每个分块在结果中的起始位置，
+           然后各分块并行地把自己的保留元素按原顺序复制到新数组中。
+           原地压缩时，后面的分块会覆盖前面的分块还没读取的元素，所以复制到新数组中。
+        最后检查modCount，fail-fast。
+    */
+    public boolean removeIfParallel(Predicate<? super E> filter, ForkJoinPool pool) {
+        Objects.requireNonNull(filter);
+        Objects.requireNonNull(pool);
+        final int size = this.size;
+        if (size < PARALLEL_THRESHOLD || pool.getParallelism() == 1) {
+            return removeIf(filter);
+        }
+        final int expectedModCount = modCount;
+        final Object[] elementData = this.elementData;
+        int chunk = parallelChunkSize(size, pool);
+        int chunks = (size + chunk - 1) / chunk;
+
+        //阶段1：标记要删除的元素
+        ParallelTask mark = new ParallelTask(this, ParallelTask.MARK, filter,
+                elementData, size, chunk, 0, chunks);
+        mark.removed = new long[(size + 63) >>> 6];
+        mark.offsets = new int[chunks + 1];
+        pool.invoke(mark);
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+
+        //前缀和：offsets[i]为第i个分块在结果中的起始位置，offsets[chunks]为新的元素个数
+        int[] offsets = mark.offsets;
+        for (int i = 0, sum = 0; i <= chunks; i++) {
+            int kept = offsets[i];
+            offsets[i] = sum;
+            sum += kept;
+        }
+        final int newSize = offsets[chunks];
+        if (newSize == size)
+            return false;
+
+        //阶段2：按原顺序把保留的元素复制到新数组
+        ParallelTask compact = new ParallelTask(this, ParallelTask.COMPACT, null,
+                elementData, size, chunk, 0, chunks);
+        compact.removed = mark.removed;
+        compact.offsets = offsets;
+        compact.target = new Object[elementData.length];
+        pool.invoke(compact);
+
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+        this.elementData = compact.target;
+        this.size = newSize;
+        modCount++;
+        if (autoShrink != null)
+            shrinkIfIdle(size);
+        return true;
+    }
+
+    /*
+        并行方法使用的任务，处理下标为[lo, hi)的分块，分块多于一个时对半拆分成两个子任务。
+        removed、offsets、target由同一次调用的所有任务共享，每个任务只写自己分块对应的部分。
+    */
+    @SuppressWarnings("serial")
+    static final class ParallelTask extends RecursiveAction {
+        static final int FOR_EACH = 0, REPLACE = 1, MARK = 2, COMPACT = 3;
+
+        final ArrayList<?> list;
+        final int mode;
+        //FOR_EACH时为Consumer，REPLACE时为UnaryOperator，MARK时为Predicate
+        final Object fn;
+        final Object[] elementData;
+        final int size, chunk, lo, hi;
+        //要删除元素的位图，第i位为1表示第i个元素要删除
+        long[] removed;
+        //MARK时记录每个分块保留的元素个数，COMPACT时为每个分块在结果中的起始位置
+        int[] offsets;
+        //COMPACT时的目标数组
+        Object[] target;
+
+        ParallelTask(ArrayList<?> list, int mode, Object fn, Object[] elementData,
+                     int size, int chunk, int lo, int hi) {
+            this.list = list;
+            this.mode = mode;
+            this.fn = fn;
+            this.elementData = elementData;
+            this.size = size;
+            this.chunk = chunk;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                ParallelTask left = fork(lo, mid), right = fork(mid, hi);
+                invokeAll(left, right);
+            } else {
+                computeChunk(lo);
+            }
+        }
+
+        //创建处理[lo, hi)分块的子任务，共享位图、偏移量和目标数组
+        private ParallelTask fork(int lo, int hi) {
+            ParallelTask t = new ParallelTask(list, mode, fn, elementData, size, chunk, lo, hi);
+            t.removed = removed;
+            t.offsets = offsets;
+            t.target = target;
+            return t;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void computeChunk(int c) {
+            final Object[] a = elementData;
+            final int from = c * chunk, to = Math.min(from + chunk, size);
+            final int expectedModCount = list.modCount;
+            switch (mode) {
+                case FOR_EACH: {
+                    Consumer<Object> action = (Consumer<Object>) fn;
+                    for (int i = from; i < to && list.modCount == expectedModCount; i++)
+                        action.accept(a[i]);
+                    break;
+                }
+                case REPLACE: {
+                    UnaryOperator<Object> operator = (UnaryOperator<Object>) fn;
+                    for (int i = from; i < to && list.modCount == expectedModCount; i++)
+                        a[i] = operator.apply(a[i]);
+                    break;
+                }
+                case MARK: {
+                    Predicate<Object> filter = (Predicate<Object>) fn;
+                    final long[] bits = removed;
+                    int kept = 0;
+                    for (int i = from; i < to && list.modCount == expectedModCount; i++) {
+                        if (filter.test(a[i]))
+                            bits[i >>> 6] |= 1L << i;
+                        else
+                            kept++;
+                    }
+                    offsets[c] = kept;
+                    break;
+                }
+                case COMPACT: {
+                    final long[] bits = removed;
+                    final Object[] t = target;
+                    int j = offsets[c];
+                    for (int i = from; i < to; i++)
+                        if ((bits[i >>> 6] & (1L << i)) == 0)
+                            t[j++] = a[i];
+                    break;
+                }
+                default:
+                    throw new InternalError();
+            }
+        }
     }
 }
@@ -0,0 +1,955 @@
+
+package java.util;
+
+import java.util.function.Consumer;
+
+
+/*
+    计数B+树（rope）实现的List。
+    ArrayList的add(int, E)、remove(int)要移动index之后的所有元素，是O(n)的；
+    LinkedList的node(index)要沿着链表走到index，也是O(n)的。
+    这个类把元素存放在叶子节点的数组中，每个节点记录子树中的元素个数，
+    按下标查找时从根节点开始，根据子节点的元素个数选择子节点，所以get、set、add(int, E)、remove(int)都是O(log n)。
+
+    节点最多NODE_CAPACITY个元素（子节点），除根节点外至少MIN_FILL个，树的高度保持在O(log n)：
+    插入时节点满了就分裂，删除后节点不足半满就与相邻节点合并或者平分。
+    两棵树可以在O(log n)时间内连接（join），一棵树可以在O(log n)时间内按下标分成两棵（split），
+    所以splitOff、concat、addAll(int, c)（除了构建c的O(k)）、removeRange（subList(from, to).clear()）都是O(log n)。
+    spliterator按叶子边界分割，适合并行流。
+
+    get是O(log n)而不是O(1)，所以不实现RandomAccess，按顺序访问时应使用迭代器或forEach，它们逐个叶子遍历。
+*/
+public class BTreeList<E> extends AbstractList<E>
+        implements List<E>, Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = -5340927446195815402L;
+
+    //叶子节点最多存放的元素个数，也是内部节点最多的子节点个数
+    static final int NODE_CAPACITY = 64;
+
+    //除根节点外，每个节点至少存放的元素（子节点）个数
+    static final int MIN_FILL = NODE_CAPACITY / 2;
+
+    //根节点，列表为空时是一个空的叶子节点
+    //transient关键字表示序列化时不序列化该字段
+    transient Node root;
+
+    //节点，size为子树中的元素个数
+    abstract static class Node {
+        int size;
+    }
+
+    //叶子节点，items[0, size)为元素
+    static final class Leaf extends Node {
+        final Object[] items = new Object[NODE_CAPACITY];
+    }
+
+    //内部节点，children[0, n)为子节点，所有子节点的高度相同
+    static final class Inner extends Node {
+        final Node[] children = new Node[NODE_CAPACITY];
+        int n;
+    }
+
+    //创建一个空的BTreeList
+    public BTreeList() {
+        root = new Leaf();
+    }
+
+    //创建一个包含collection的所有元素的BTreeList，自底向上一次构建，O(n)
+    public BTreeList(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        root = orEmpty(build(a, 0, a.length));
+    }
+
+    public int size() {
+        return root.size;
+    }
+
+    public E get(int index) {
+        rangeCheck(index);
+        Node x = root;
+        while (x instanceof Inner) {
+            Inner in = (Inner) x;
+            int k = 0;
+            Node c;
+            while (index >= (c = in.children[k]).size) {
+                index -= c.size;
+                k++;
+            }
+            x = c;
+        }
+        @SuppressWarnings("unchecked") E e = (E) ((Leaf) x).items[index];
+        return e;
+    }
+
+    public E set(int index, E element) {
+        rangeCheck(index);
+        Node x = root;
+        while (x instanceof Inner) {
+            Inner in = (Inner) x;
+            int k = 0;
+            Node c;
+            while (index >= (c = in.children[k]).size) {
+                index -= c.size;
+                k++;
+            }
+            x = c;
+        }
+        Object[] items = ((Leaf) x).items;
+        @SuppressWarnings("unchecked") E oldValue = (E) items[index];
+        items[index] = element;
+        return oldValue;
+    }
+
+    public boolean add(E e) {
+        add(size(), e);
+        return true;
+    }
+
+    //插入元素，根节点分裂时树的高度加一
+    public void add(int index, E element) {
+        rangeCheckForAdd(index);
+        modCount++;
+        Node s = insert(root, index, element);
+        if (s != null)
+            root = newRoot(root, s);
+    }
+
+    //删除元素，根节点只剩一个子节点时树的高度减一
+    public E remove(int index) {
+        rangeCheck(index);
+        modCount++;
+        @SuppressWarnings("unchecked") E oldValue = (E) remove(root, index);
+        root = orEmpty(collapse(root));
+        return oldValue;
+    }
+
+    public void clear() {
+        modCount++;
+        root = new Leaf();
+    }
+
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size(), c);
+    }
+
+    //先用c的元素构建一棵树，再把原来的树在index处分开，依次连接三棵树，O(k + log n)
+    public boolean addAll(int index, Collection<? extends E> c) {
+        rangeCheckForAdd(index);
+        Object[] a = c.toArray();
+        modCount++;
+        if (a.length == 0)
+            return false;
+        Node[] parts = new Node[2];
+        split(root, index, parts);
+        root = orEmpty(join(join(parts[0], build(a, 0, a.length)), parts[1]));
+        return true;
+    }
+
+    //在toIndex和fromIndex处分开，丢弃中间的树，再连接两边，O(log n)
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        if (fromIndex >= toIndex)
+            return;
+        Node[] parts = new Node[2];
+        split(root, toIndex, parts);
+        Node right = parts[1];
+        split(parts[0], fromIndex, parts);
+        root = orEmpty(join(parts[0], right));
+    }
+
+    /*
+        把下标为[index, size)的元素移到一个新的BTreeList中返回，这个列表只保留前index个元素，O(log n)。
+        index小于0或大于size时抛出IndexOutOfBoundsException异常。
+    */
+    public BTreeList<E> splitOff(int index) {
+        rangeCheckForAdd(index);
+        modCount++;
+        Node[] parts = new Node[2];
+        split(root, index, parts);
+        root = orEmpty(parts[0]);
+        BTreeList<E> tail = new BTreeList<>();
+        tail.root = orEmpty(parts[1]);
+        return tail;
+    }
+
+    /*
+        把other的所有元素移到这个列表的末尾，other变为空列表，O(log n)。
+        other是这个列表本身时抛出IllegalArgumentException异常。
+    */
+    public void concat(BTreeList<? extends E> other) {
+        if (other == this)
+            throw new IllegalArgumentException("Cannot concat a list to itself");
+        modCount++;
+        other.modCount++;
+        root = orEmpty(join(root, other.root));
+        other.root = new Leaf();
+    }
+
+    //检查子列表的下标，与ArrayList.subList相同
+    public List<E> subList(int fromIndex, int toIndex) {
+        ArrayList.subListRangeCheck(fromIndex, toIndex, size());
+        return super.subList(fromIndex, toIndex);
+    }
+
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    //逐个叶子顺序查找
+    public int indexOf(Object o) {
+        if (root.size == 0)
+            return -1;
+        Cursor c = new Cursor(root, 0);
+        int base = 0;
+        do {
+            Object[] items = c.leaf.items;
+            int n = c.leaf.size;
+            if (o == null) {
+                for (int i = 0; i < n; i++)
+                    if (items[i] == null)
+                        return base + i;
+            } else {
+                for (int i = 0; i < n; i++)
+                    if (o.equals(items[i]))
+                        return base + i;
+            }
+            base += n;
+        } while (c.nextLeaf());
+        return -1;
+    }
+
+    //从最后一个叶子开始逆序查找
+    public int lastIndexOf(Object o) {
+        return lastIndexOf(root, o, 0);
+    }
+
+    private static int lastIndexOf(Node x, Object o, int base) {
+        if (x instanceof Leaf) {
+            Object[] items = ((Leaf) x).items;
+            for (int i = x.size - 1; i >= 0; i--)
+                if (o == null ? items[i] == null : o.equals(items[i]))
+                    return base + i;
+            return -1;
+        }
+        Inner in = (Inner) x;
+        int end = base + in.size;
+        for (int k = in.n - 1; k >= 0; k--) {
+            Node c = in.children[k];
+            end -= c.size;
+            int i = lastIndexOf(c, o, end);
+            if (i >= 0)
+                return i;
+        }
+        return -1;
+    }
+
+    public Object[] toArray() {
+        Object[] a = new Object[size()];
+        copyOut(root, a, 0);
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        int n = size();
+        if (a.length < n)
+            a = (T[]) java.lang.reflect.Array.newInstance(
+                    a.getClass().getComponentType(), n);
+        copyOut(root, a, 0);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    //将子树x的元素按顺序复制到a中从off开始的位置
+    private static void copyOut(Node x, Object[] a, int off) {
+        if (x instanceof Leaf) {
+            System.arraycopy(((Leaf) x).items, 0, a, off, x.size);
+            return;
+        }
+        Inner in = (Inner) x;
+        for (int k = 0; k < in.n; k++) {
+            copyOut(in.children[k], a, off);
+            off += in.children[k].size;
+        }
+    }
+
+    //逐个叶子遍历所有元素
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        if (root.size > 0) {
+            Cursor c = new Cursor(root, 0);
+            do {
+                Object[] items = c.leaf.items;
+                for (int i = 0, n = c.leaf.size; i < n && modCount == expectedModCount; i++) {
+                    @SuppressWarnings("unchecked") E e = (E) items[i];
+                    action.accept(e);
+                }
+            } while (modCount == expectedModCount && c.nextLeaf());
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //克隆，用所有元素重新构建一棵树
+    public Object clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            BTreeList<E> v = (BTreeList<E>) super.clone();
+            Object[] a = toArray();
+            v.root = orEmpty(build(a, 0, a.length));
+            v.modCount = 0;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+    }
+
+    //检查传入下标是否越界
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //检查添加元素时，传入下标是否大于元素个数或者小于0
+    private void rangeCheckForAdd(int index) {
+        if (index > size() || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //返回异常信息
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size();
+    }
+
+    // Tree operations
+
+    //节点中元素（子节点）的个数
+    private static int count(Node x) {
+        return (x instanceof Leaf) ? x.size : ((Inner) x).n;
+    }
+
+    //非根节点是否不足半满
+    private static boolean underfull(Node x) {
+        return count(x) < MIN_FILL;
+    }
+
+    //树的高度，叶子节点为0
+    static int height(Node x) {
+        int h = 0;
+        for (; x instanceof Inner; h++)
+            x = ((Inner) x).children[0];
+        return h;
+    }
+
+    //重新计算内部节点的元素个数
+    private static int sum(Inner in) {
+        int s = 0;
+        for (int k = 0; k < in.n; k++)
+            s += in.children[k].size;
+        return s;
+    }
+
+    //以两个高度相同的节点为子节点创建新的根节点
+    private static Inner newRoot(Node left, Node right) {
+        Inner r = new Inner();
+        r.children[0] = left;
+        r.children[1] = right;
+        r.n = 2;
+        r.size = left.size + right.size;
+        return r;
+    }
+
+    //去掉只有一个子节点的根节点，空树返回null
+    private static Node collapse(Node x) {
+        while (x instanceof Inner && ((Inner) x).n == 1)
+            x = ((Inner) x).children[0];
+        return (x == null || x.size == 0) ? null : x;
+    }
+
+    //null表示空树，作为根节点时换成空的叶子节点
+    private static Node orEmpty(Node x) {
+        return (x == null) ? new Leaf() : x;
+    }
+
+    /*
+        在子树x的下标index处插入e，x满了时分裂成两个节点，
+        x保留前一半，返回后一半（调用方把它插入到x之后），没有分裂时返回null。
+    */
+    private static Node insert(Node x, int index, Object e) {
+        if (x instanceof Leaf) {
+            Leaf l = (Leaf) x;
+            if (l.size < NODE_CAPACITY) {
+                System.arraycopy(l.items, index, l.items, index + 1, l.size - index);
+                l.items[index] = e;
+                l.size++;
+                return null;
+            }
+            Leaf r = new Leaf();
+            int half = NODE_CAPACITY / 2;
+            System.arraycopy(l.items, half, r.items, 0, NODE_CAPACITY - half);
+            Arrays.fill(l.items, half, NODE_CAPACITY, null);
+            l.size = half;
+            r.size = NODE_CAPACITY - half;
+            if (index <= half)
+                insert(l, index, e);
+            else
+                insert(r, index - half, e);
+            return r;
+        }
+        Inner in = (Inner) x;
+        //index等于子节点的元素个数时插入到这个子节点的末尾
+        int k = 0;
+        while (k < in.n - 1 && index > in.children[k].size) {
+            index -= in.children[k].size;
+            k++;
+        }
+        Node s = insert(in.children[k], index, e);
+        in.size++;
+        return (s == null) ? null : insertChild(in, k + 1, s);
+    }
+
+    /*
+        在in的第k个位置插入子节点c，c的元素应该已经计入in.size。
+        in满了时分裂成两个节点，重新计算两者的元素个数，返回后一半，没有分裂时返回null。
+    */
+    private static Inner insertChild(Inner in, int k, Node c) {
+        if (in.n < NODE_CAPACITY) {
+            System.arraycopy(in.children, k, in.children, k + 1, in.n - k);
+            in.children[k] = c;
+            in.n++;
+            return null;
+        }
+        Inner r = new Inner();
+        int half = NODE_CAPACITY / 2;
+        System.arraycopy(in.children, half, r.children, 0, NODE_CAPACITY - half);
+        Arrays.fill(in.children, half, NODE_CAPACITY, null);
+        in.n = half;
+        r.n = NODE_CAPACITY - half;
+        if (k <= half)
+            insertChild(in, k, c);
+        else
+            insertChild(r, k - half, c);
+        in.size = sum(in);
+        r.size = sum(r);
+        return r;
+    }
+
+    //删除子树x中下标index处的元素并返回，子节点不足半满时与相邻节点合并或平分
+    private static Object remove(Node x, int index) {
+        if (x instanceof Leaf) {
+            Leaf l = (Leaf) x;
+            Object oldValue = l.items[index];
+            System.arraycopy(l.items, index + 1, l.items, index, l.size - index - 1);
+            l.items[--l.size] = null;
+            return oldValue;
+        }
+        Inner in = (Inner) x;
+        int k = 0;
+        Node c;
+        while (index >= (c = in.children[k]).size) {
+            index -= c.size;
+            k++;
+        }
+        Object oldValue = remove(c, index);
+        in.size--;
+        if (underfull(c))
+            fixChild(in, k);
+        return oldValue;
+    }
+
+    //in的第k个子节点不足半满：与相邻的兄弟节点合计不超过NODE_CAPACITY时合并，否则两者平分
+    private static void fixChild(Inner in, int k) {
+        if (in.n < 2)
+            return;
+        int j = (k > 0) ? k - 1 : k;
+        Node a = in.children[j], b = in.children[j + 1];
+        if (count(a) + count(b) <= NODE_CAPACITY) {
+            merge(a, b);
+            System.arraycopy(in.children, j + 2, in.children, j + 1, in.n - j - 2);
+            in.children[--in.n] = null;
+        } else {
+            balance(a, b);
+        }
+    }
+
+    //把高度相同的b的所有元素（子节点）追加到a的末尾，调用方保证不超过NODE_CAPACITY
+    private static void merge(Node a, Node b) {
+        if (a instanceof Leaf) {
+            System.arraycopy(((Leaf) b).items, 0, ((Leaf) a).items, a.size, b.size);
+        } else {
+            Inner ia = (Inner) a, ib = (Inner) b;
+            System.arraycopy(ib.children, 0, ia.children, ia.n, ib.n);
+            ia.n += ib.n;
+        }
+        a.size += b.size;
+    }
+
+    //在高度相同的相邻节点a、b之间移动元素（子节点），使两者个数相差不超过1，合计超过NODE_CAPACITY时两者都不少于MIN_FILL
+    private static void balance(Node a, Node b) {
+        if (a instanceof Leaf) {
+            Object[] x = ((Leaf) a).items, y = ((Leaf) b).items;
+            int total = a.size + b.size, left = total / 2;
+            if (a.size > left) {
+                int m = a.size - left;
+                System.arraycopy(y, 0, y, m, b.size);
+                System.arraycopy(x, left, y, 0, m);
+                Arrays.fill(x, left, a.size, null);
+            } else if (a.size < left) {
+                int m = left - a.size;
+                System.arraycopy(y, 0, x, a.size, m);
+                System.arraycopy(y, m, y, 0, b.size - m);
+                Arrays.fill(y, b.size - m, b.size, null);
+            }
+            a.size = left;
+            b.size = total - left;
+        } else {
+            Inner ia = (Inner) a, ib = (Inner) b;
+            Node[] x = ia.children, y = ib.children;
+            int total = ia.n + ib.n, left = total / 2;
+            if (ia.n > left) {
+                int m = ia.n - left;
+                System.arraycopy(y, 0, y, m, ib.n);
+                System.arraycopy(x, left, y, 0, m);
+                Arrays.fill(x, left, ia.n, null);
+            } else if (ia.n < left) {
+                int m = left - ia.n;
+                System.arraycopy(y, 0, x, ia.n, m);
+                System.arraycopy(y, m, y, 0, ib.n - m);
+                Arrays.fill(y, ib.n - m, ib.n, null);
+            }
+            ia.n = left;
+            ib.n = total - left;
+            ia.size = sum(ia);
+            ib.size = sum(ib);
+        }
+    }
+
+    /*
+        连接两棵树，left的元素都在right之前，返回新树的根，两棵树都为空时返回null。
+        较矮的树沿着较高的树的右（左）边界向下，作为同一高度节点的兄弟插入，
+        较矮的树的根节点可能不足半满，插入前与相邻节点合并或平分；插入导致的分裂向上传递。
+        耗时与两棵树的高度差成正比。
+    */
+    static Node join(Node left, Node right) {
+        left = collapse(left);
+        right = collapse(right);
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        int hl = height(left), hr = height(right);
+        if (hl == hr) {
+            if (count(left) + count(right) <= NODE_CAPACITY) {
+                merge(left, right);
+                return left;
+            }
+            balance(left, right);
+            return newRoot(left, right);
+        }
+        if (hl > hr) {
+            Node s = joinRight((Inner) left, hl, right, hr);
+            return (s == null) ? left : newRoot(left, s);
+        }
+        Node s = joinLeft(left, hl, (Inner) right, hr);
+        return (s == null) ? right : newRoot(right, s);
+    }
+
+    //把高度为hr的树r连接到高度为hp（大于hr）的子树p的右边，p分裂时返回后一半
+    private static Node joinRight(Inner p, int hp, Node r, int hr) {
+        int rs = r.size;
+        if (hp == hr + 1) {
+            Node s = p.children[p.n - 1];
+            p.size += rs;
+            if (count(s) + count(r) <= NODE_CAPACITY) {
+                merge(s, r);
+                return null;
+            }
+            if (underfull(r))
+                balance(s, r);
+            return insertChild(p, p.n, r);
+        }
+        Node s = joinRight((Inner) p.children[p.n - 1], hp - 1, r, hr);
+        p.size += rs;
+        return (s == null) ? null : insertChild(p, p.n, s);
+    }
+
+    //把高度为hl的树l连接到高度为hp（大于hl）的子树p的左边，p分裂时返回后一半
+    private static Node joinLeft(Node l, int hl, Inner p, int hp) {
+        int ls = l.size;
+        if (hp == hl + 1) {
+            Node s = p.children[0];
+            p.size += ls;
+            if (count(l) + count(s) <= NODE_CAPACITY) {
+                merge(l, s);
+                p.children[0] = l;
+                return null;
+            }
+            if (underfull(l))
+                balance(l, s);
+            return insertChild(p, 0, l);
+        }
+        Node s = joinLeft(l, hl, (Inner) p.children[0], hp - 1);
+        p.size += ls;
+        return (s == null) ? null : insertChild(p, 1, s);
+    }
+
+    /*
+        把树x分成前index个元素和其余元素两棵树，分别存入parts[0]和parts[1]（空树为null），x之后不能再使用。
+        沿着index所在的路径向下，每一层把路径左边的子节点组成一棵树、右边的子节点组成一棵树，
+        再与下一层分出的两棵树分别连接。
+    */
+    static void split(Node x, int index, Node[] parts) {
+        if (x == null || index == 0) {
+            parts[0] = null;
+            parts[1] = x;
+            return;
+        }
+        if (index == x.size) {
+            parts[0] = x;
+            parts[1] = null;
+            return;
+        }
+        if (x instanceof Leaf) {
+            Leaf l = (Leaf) x, r = new Leaf();
+            System.arraycopy(l.items, index, r.items, 0, l.size - index);
+            Arrays.fill(l.items, index, l.size, null);
+            r.size = l.size - index;
+            l.size = index;
+            parts[0] = l;
+            parts[1] = r;
+            return;
+        }
+        Inner in = (Inner) x;
+        int k = 0;
+        Node c;
+        while (index >= (c = in.children[k]).size) {
+            index -= c.size;
+            k++;
+        }
+        Node leftGroup = group(in, 0, k), rightGroup = group(in, k + 1, in.n);
+        split(c, index, parts);
+        Node cl = parts[0], cr = parts[1];
+        parts[0] = join(leftGroup, cl);
+        parts[1] = join(cr, rightGroup);
+    }
+
+    //用in的子节点[from, to)组成一棵树，没有子节点时返回null，只有一个时返回这个子节点
+    private static Node group(Inner in, int from, int to) {
+        if (from >= to)
+            return null;
+        if (to - from == 1)
+            return in.children[from];
+        Inner g = new Inner();
+        System.arraycopy(in.children, from, g.children, 0, to - from);
+        g.n = to - from;
+        g.size = sum(g);
+        return g;
+    }
+
+    /*
+        用a[off, off+len)自底向上构建一棵树，每一层的节点平均分配元素（子节点），
+        节点个数不少于2时每个节点都不少于MIN_FILL，len为0时返回null。
+    */
+    static Node build(Object[] a, int off, int len) {
+        if (len == 0)
+            return null;
+        int leaves = (len + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        Node[] level = new Node[leaves];
+        for (int j = 0, p = off; j < leaves; j++) {
+            Leaf l = new Leaf();
+            int cnt = len / leaves + (j < len % leaves ? 1 : 0);
+            System.arraycopy(a, p, l.items, 0, cnt);
+            l.size = cnt;
+            p += cnt;
+            level[j] = l;
+        }
+        while (level.length > 1) {
+            int m = (level.length + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            Node[] up = new Node[m];
+            for (int j = 0, p = 0; j < m; j++) {
+                Inner in = new Inner();
+                int cnt = level.length / m + (j < level.length % m ? 1 : 0);
+                System.arraycopy(level, p, in.children, 0, cnt);
+                in.n = cnt;
+                in.size = sum(in);
+                p += cnt;
+                up[j] = in;
+            }
+            level = up;
+        }
+        return level[0];
+    }
+
+    /*
+        指向某个叶子中某个位置的游标，记录从根节点到叶子的路径，nextLeaf沿着路径移动到下一个叶子，
+        所以逐个叶子遍历整棵树是O(n)的。迭代器、indexOf、forEach和分割器都使用它。
+    */
+    static final class Cursor {
+        private final Inner[] path;
+        private final int[] pos;
+        Leaf leaf;
+        int offset;
+
+        //定位到下标index，index等于元素个数时定位到最后一个叶子的末尾
+        Cursor(Node root, int index) {
+            int h = height(root);
+            path = new Inner[h];
+            pos = new int[h];
+            Node x = root;
+            for (int d = 0; d < h; d++) {
+                Inner in = (Inner) x;
+                int k = 0;
+                while (k < in.n - 1 && index >= in.children[k].size) {
+                    index -= in.children[k].size;
+                    k++;
+                }
+                path[d] = in;
+                pos[d] = k;
+                x = in.children[k];
+            }
+            leaf = (Leaf) x;
+            offset = index;
+        }
+
+        //移动到下一个叶子的开头，没有下一个叶子时返回false
+        boolean nextLeaf() {
+            int d = path.length - 1;
+            while (d >= 0 && pos[d] == path[d].n - 1)
+                d--;
+            if (d < 0)
+                return false;
+            Node x = path[d].children[++pos[d]];
+            for (d++; d < path.length; d++) {
+                path[d] = (Inner) x;
+                pos[d] = 0;
+                x = path[d].children[0];
+            }
+            leaf = (Leaf) x;
+            offset = 0;
+            return true;
+        }
+    }
+
+    //返回逐个叶子遍历的迭代器，next均摊O(1)，remove为O(log n)
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        //下一个元素的下标
+        int cursor;
+        //刚被读取的元素下标，-1表示没有
+        int lastRet = -1;
+        int expectedModCount = modCount;
+        //指向下一个元素的游标
+        Cursor at = new Cursor(root, 0);
+
+        public boolean hasNext() {
+            return cursor != size();
+        }
+
+        public E next() {
+            checkForComodification();
+            int i = cursor;
+            if (i >= size())
+                throw new NoSuchElementException();
+            Cursor c = at;
+            if (c.offset == c.leaf.size && !c.nextLeaf())
+                throw new ConcurrentModificationException();
+            cursor = i + 1;
+            lastRet = i;
+            @SuppressWarnings("unchecked") E e = (E) c.leaf.items[c.offset++];
+            return e;
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            try {
+                BTreeList.this.remove(lastRet);
+                cursor = lastRet;
+                lastRet = -1;
+                expectedModCount = modCount;
+                //删除可能合并或平分了节点，重新定位
+                at = new Cursor(root, cursor);
+            } catch (IndexOutOfBoundsException ex) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    //序列化：写出元素个数和所有元素
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+        s.writeInt(size());
+        if (root.size > 0) {
+            Cursor c = new Cursor(root, 0);
+            do {
+                for (int i = 0; i < c.leaf.size; i++)
+                    s.writeObject(c.leaf.items[i]);
+            } while (c.nextLeaf());
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //反序列化：读入所有元素后自底向上构建
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int size = s.readInt();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+        Object[] a = new Object[size];
+        for (int i = 0; i < size; i++)
+            a[i] = s.readObject();
+        root = orEmpty(build(a, 0, size));
+    }
+
+    //返回一个按叶子边界分割的分割器
+    @Override
+    public Spliterator<E> spliterator() {
+        return new LeafSpliterator<>(this, 0, -1, 0);
+    }
+
+    /*
+        按叶子边界分割的分割器，结构与ArrayList.ArrayListSpliterator相同，下标为逻辑下标。
+        trySplit在离中点最近的叶子边界处分割，每个分割器只处理完整的叶子（两端除外），
+        范围在一个叶子之内时不再分割；遍历时用Cursor逐个叶子访问数组。
+    */
+    static final class LeafSpliterator<E> implements Spliterator<E> {
+
+        private final BTreeList<E> list;
+        //分割器起始索引（包含）
+        private int index; // current index, modified on advance/split
+        //分割器末尾索引（不包含），-1表示到最后一个元素
+        private int fence; // -1 until used; then one past last index
+        private int expectedModCount; // initialized when fence set
+        //tryAdvance使用的游标，第一次使用时创建
+        private Cursor at;
+
+        LeafSpliterator(BTreeList<E> list, int origin, int fence,
+                        int expectedModCount) {
+            this.list = list; // OK if null unless traversed
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        //获取实际末尾索引
+        private int getFence() { // initialize fence to size on first use
+            int hi;
+            BTreeList<E> lst;
+            if ((hi = fence) < 0) {
+                if ((lst = list) == null)
+                    hi = fence = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    hi = fence = lst.size();
+                }
+            }
+            return hi;
+        }
+
+        //在离中点最近的叶子边界处分割
+        public LeafSpliterator<E> trySplit() {
+            int hi = getFence(), lo = index;
+            if (hi - lo < 2 || at != null)
+                return null;
+            int mid = (lo + hi) >>> 1;
+            //中点所在叶子的起始下标，若不在lo之后，则改用这个叶子的末尾
+            Cursor c = new Cursor(list.root, mid);
+            int start = mid - c.offset;
+            if (start <= lo)
+                start += c.leaf.size;
+            if (start >= hi)
+                return null;
+            return new LeafSpliterator<E>(list, lo, index = start, expectedModCount);
+        }
+
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int hi = getFence(), i = index;
+            if (i < hi) {
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                Cursor c = at;
+                if (c == null)
+                    c = at = new Cursor(list.root, i);
+                else if (c.offset == c.leaf.size)
+                    c.nextLeaf();
+                index = i + 1;
+                @SuppressWarnings("unchecked") E e = (E) c.leaf.items[c.offset++];
+                action.accept(e);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public void forEachRemaining(Consumer<? super E> action) {
+            int i, hi, mc;
+            BTreeList<E> lst;
+            if (action == null)
+                throw new NullPointerException();
+            if ((lst = list) != null) {
+                if ((hi = fence) < 0) {
+                    mc = lst.modCount;
+                    hi = lst.size();
+                }
+                else
+                    mc = expectedModCount;
+                if ((i = index) >= 0 && (index = hi) <= lst.size() && lst.modCount == mc) {
+                    if (i < hi) {
+                        Cursor c = at;
+                        if (c == null)
+                            c = new Cursor(lst.root, i);
+                        for (;;) {
+                            if (c.offset == c.leaf.size)
+                                c.nextLeaf();
+                            Object[] items = c.leaf.items;
+                            int end = Math.min(c.leaf.size, c.offset + (hi - i));
+                            i += end - c.offset;
+                            for (int j = c.offset; j < end; j++) {
+                                @SuppressWarnings("unchecked") E e = (E) items[j];
+                                action.accept(e);
+                            }
+                            c.offset = end;
+                            if (i >= hi)
+                                break;
+                        }
+                    }
+                    if (lst.modCount == mc)
+                        return;
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            return (long) (getFence() - index);
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
@@ -0,0 +1,729 @@
+
+package java.util;
+
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+
+/*
+    元素类型为double的ArrayList。
+    ArrayList<Double>中每个元素都是一个Double对象，数组里存的是对象引用，
+    内存占用大约是double[]的数倍，并且每次get都要多一次指针跳转。
+    这个类的结构与ArrayList相同（elementData、size、grow、removeRange、batchRemove、removeIf、sort、分割器），
+    只是elementData换成了double[]。
+    getDouble、addDouble、setDouble等方法不会装箱，forEachDouble、removeIfDouble、replaceAllDouble和spliterator()返回的Spliterator.OfDouble
+    也不会装箱，配合doubleStream()可以让流操作全程使用基本类型。
+    List<Double>接口中的方法依然可用，但会装箱。
+*/
+public class DoubleArrayList extends AbstractList<Double>
+        implements RandomAccess, Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = -1935187430318245022L;
+
+    //默认容量为10
+    private static final int DEFAULT_CAPACITY = 10;
+
+    //无元素数组
+    private static final double[] EMPTY_ELEMENTDATA = {};
+
+    //默认容量数组，长度为0，第一次add的时候才会扩容为默认容量10
+    private static final double[] DEFAULTCAPACITY_EMPTY_ELEMENTDATA = {};
+
+    //这个成员变量用来存储元素
+    transient double[] elementData; // non-private to simplify nested class access
+
+    //记录元素个数
+    private int size;
+
+    //扩容策略，与ArrayList共用同一套策略，null表示默认策略
+    private transient ArrayList.GrowthPolicy growthPolicy;
+
+    //创建一个初始容量为initialCapacity的空列表
+    public DoubleArrayList(int initialCapacity) {
+        if (initialCapacity > 0) {
+            this.elementData = new double[initialCapacity];
+        } else if (initialCapacity == 0) {
+            this.elementData = EMPTY_ELEMENTDATA;
+        } else {
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        }
+    }
+
+    //创建一个使用指定扩容策略的空列表
+    public DoubleArrayList(int initialCapacity, ArrayList.GrowthPolicy growthPolicy) {
+        this(initialCapacity);
+        setGrowthPolicy(growthPolicy);
+    }
+
+    //创建一个空列表，第一次add时才会扩容为默认容量10
+    public DoubleArrayList() {
+        this.elementData = DEFAULTCAPACITY_EMPTY_ELEMENTDATA;
+    }
+
+    //创建一个包含数组a中所有元素的列表
+    public DoubleArrayList(double[] a) {
+        if ((size = a.length) != 0) {
+            elementData = Arrays.copyOf(a, size);
+        } else {
+            elementData = EMPTY_ELEMENTDATA;
+        }
+    }
+
+    //创建一个包含集合c中所有元素的列表，集合中不能有null
+    public DoubleArrayList(Collection<? extends Double> c) {
+        this(c.size());
+        for (Double e : c)
+            addDouble(e);
+    }
+
+    //更换扩容策略
+    public void setGrowthPolicy(ArrayList.GrowthPolicy growthPolicy) {
+        Objects.requireNonNull(growthPolicy);
+        this.growthPolicy = (growthPolicy == ArrayList.GrowthPolicy.DEFAULT) ? null : growthPolicy;
+    }
+
+    //将数组长度修剪为实际元素个数
+    public void trimToSize() {
+        modCount++;
+        if (size < elementData.length) {
+            elementData = (size == 0)
+                    ? EMPTY_ELEMENTDATA
+                    : Arrays.copyOf(elementData, size);
+        }
+    }
+
+    //对数组进行扩容，minCapacity是最小所需容量
+    public void ensureCapacity(int minCapacity) {
+        int minExpand = (elementData != DEFAULTCAPACITY_EMPTY_ELEMENTDATA)
+                ? 0
+                : DEFAULT_CAPACITY;
+
+        if (minCapacity > minExpand) {
+            ensureExplicitCapacity(minCapacity);
+        }
+    }
+
+    //计算最小所需容量，默认容量数组第一次扩容时至少扩容到10
+    private static int calculateCapacity(double[] elementData, int minCapacity) {
+        if (elementData == DEFAULTCAPACITY_EMPTY_ELEMENTDATA) {
+            return Math.max(DEFAULT_CAPACITY, minCapacity);
+        }
+        return minCapacity;
+    }
+
+    private void ensureCapacityInternal(int minCapacity) {
+        ensureExplicitCapacity(calculateCapacity(elementData, minCapacity));
+    }
+
+    //判断是否需要进行扩容，需要则用grow方法进行扩容
+    private void ensureExplicitCapacity(int minCapacity) {
+        modCount++;
+
+        // overflow-conscious code
+        if (minCapacity - elementData.length > 0)
+            grow(minCapacity);
+    }
+
+    //数组最大长度
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    //扩容算法，新容量由扩容策略决定，与ArrayList.grow相同
+    private void grow(int minCapacity) {
+        // overflow-conscious code
+        int oldCapacity = elementData.length;
+        ArrayList.GrowthPolicy policy = growthPolicy;
+        if (policy == null)
+            policy = ArrayList.GrowthPolicy.DEFAULT;
+        int newCapacity = policy.newCapacity(oldCapacity, minCapacity);
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = hugeCapacity(minCapacity);
+        elementData = Arrays.copyOf(elementData, newCapacity);
+    }
+
+    private static int hugeCapacity(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        return (minCapacity > MAX_ARRAY_SIZE) ?
+                Integer.MAX_VALUE :
+                MAX_ARRAY_SIZE;
+    }
+
+    //返回实际存储的元素个数
+    public int size() {
+        return size;
+    }
+
+    //判断是否有存储元素
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //判断是否包含传入的值，不装箱
+    public boolean containsDouble(double value) {
+        return indexOfDouble(value) >= 0;
+    }
+
+    //boxed版本，传入的不是Double时直接返回false
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    //获取值第一次出现的位置，不装箱
+    public int indexOfDouble(double value) {
+        for (int i = 0; i < size; i++)
+            if (Double.doubleToLongBits(elementData[i]) == Double.doubleToLongBits(value))
+                return i;
+        return -1;
+    }
+
+    //获取值最后一次出现的位置，不装箱
+    public int lastIndexOfDouble(double value) {
+        for (int i = size-1; i >= 0; i--)
+            if (Double.doubleToLongBits(elementData[i]) == Double.doubleToLongBits(value))
+                return i;
+        return -1;
+    }
+
+    //boxed版本，传入的不是Double时直接返回-1
+    public int indexOf(Object o) {
+        return (o instanceof Double) ? indexOfDouble((Double) o) : -1;
+    }
+
+    //boxed版本，传入的不是Double时直接返回-1
+    public int lastIndexOf(Object o) {
+        return (o instanceof Double) ? lastIndexOfDouble((Double) o) : -1;
+    }
+
+    //克隆
+    public Object clone() {
+        try {
+            DoubleArrayList v = (DoubleArrayList) super.clone();
+            v.elementData = Arrays.copyOf(elementData, size);
+            v.modCount = 0;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+    }
+
+    //返回所有元素组成的double数组
+    public double[] toDoubleArray() {
+        return Arrays.copyOf(elementData, size);
+    }
+
+    //返回index索引位置的值，不装箱
+    public double getDouble(int index) {
+        rangeCheck(index);
+        return elementData[index];
+    }
+
+    //boxed版本
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    //将index位置的值替换为value，并返回旧值，不装箱
+    public double setDouble(int index, double value) {
+        rangeCheck(index);
+        double oldValue = elementData[index];
+        elementData[index] = value;
+        return oldValue;
+    }
+
+    //boxed版本
+    public Double set(int index, Double element) {
+        return setDouble(index, element);
+    }
+
+    //在末尾添加值，不装箱
+    public boolean addDouble(double value) {
+        ensureCapacityInternal(size + 1);  // Increments modCount!!
+        elementData[size++] = value;
+        return true;
+    }
+
+    //boxed版本
+    public boolean add(Double e) {
+        return addDouble(e);
+    }
+
+    //将值插入到指定索引位置，不装箱
+    public void addDouble(int index, double value) {
+        rangeCheckForAdd(index);
+
+        ensureCapacityInternal(size + 1);  // Increments modCount!!
+        System.arraycopy(elementData, index, elementData, index + 1,
+                size - index);
+        elementData[index] = value;
+        size++;
+    }
+
+    //boxed版本
+    public void add(int index, Double element) {
+        addDouble(index, element);
+    }
+
+    //删除指定位置的值，并返回被删除的值，不装箱
+    public double removeDoubleAt(int index) {
+        rangeCheck(index);
+
+        modCount++;
+        double oldValue = elementData[index];
+        int numMoved = size - index - 1;
+        if (numMoved > 0)
+            System.arraycopy(elementData, index+1, elementData, index,
+                    numMoved);
+        size--;
+        return oldValue;
+    }
+
+    //boxed版本
+    public Double remove(int index) {
+        return removeDoubleAt(index);
+    }
+
+    //删除第一个等于value的值，不装箱
+    public boolean removeDouble(double value) {
+        int index = indexOfDouble(value);
+        if (index < 0)
+            return false;
+        removeDoubleAt(index);
+        return true;
+    }
+
+    //boxed版本
+    public boolean remove(Object o) {
+        return (o instanceof Double) && removeDouble((Double) o);
+    }
+
+    //清空所有元素，基本类型无需赋值null帮助GC
+    public void clear() {
+        modCount++;
+        size = 0;
+    }
+
+    //将数组a中所有值添加到末尾
+    public boolean addAll(double[] a) {
+        int numNew = a.length;
+        ensureCapacityInternal(size + numNew);  // Increments modCount
+        System.arraycopy(a, 0, elementData, size, numNew);
+        size += numNew;
+        return numNew != 0;
+    }
+
+    //将集合中的所有元素添加到末尾，另一个DoubleArrayList会直接复制数组
+    public boolean addAll(Collection<? extends Double> c) {
+        if (c instanceof DoubleArrayList) {
+            DoubleArrayList l = (DoubleArrayList) c;
+            int numNew = l.size;
+            ensureCapacityInternal(size + numNew);  // Increments modCount
+            System.arraycopy(l.elementData, 0, elementData, size, numNew);
+            size += numNew;
+            return numNew != 0;
+        }
+        ensureCapacityInternal(size + c.size());  // Increments modCount
+        boolean modified = false;
+        for (Double e : c)
+            modified |= addDouble(e);
+        return modified;
+    }
+
+    //将数组a中所有值插入到指定位置，与ArrayList.addAll(int, Collection)相同，原有元素只移动一次
+    public boolean addAll(int index, double[] a) {
+        rangeCheckForAdd(index);
+
+        int numNew = a.length;
+        ensureCapacityInternal(size + numNew);  // Increments modCount
+        int numMoved = size - index;
+        if (numMoved > 0)
+            System.arraycopy(elementData, index, elementData, index + numNew,
+                    numMoved);
+        System.arraycopy(a, 0, elementData, index, numNew);
+        size += numNew;
+        return numNew != 0;
+    }
+
+    //将集合中的所有元素插入到指定位置，先一次性拆箱成double数组，集合中不能有null
+    public boolean addAll(int index, Collection<? extends Double> c) {
+        rangeCheckForAdd(index);
+
+        double[] a;
+        if (c instanceof DoubleArrayList) {
+            a = ((DoubleArrayList) c).toDoubleArray();
+        } else {
+            Object[] o = c.toArray();
+            a = new double[o.length];
+            for (int i = 0; i < o.length; i++)
+                a[i] = (Double) o[i];
+        }
+        return addAll(index, a);
+    }
+
+    //删除从开始坐标fromIndex到截止坐标toIndex的元素
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        int numMoved = size - toIndex;
+        System.arraycopy(elementData, toIndex, elementData, fromIndex,
+                numMoved);
+        size = size - (toIndex-fromIndex);
+    }
+
+    //检查传入下标是否越界
+    private void rangeCheck(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //检查添加元素时，传入下标是否大于元素个数或者小于0
+    private void rangeCheckForAdd(int index) {
+        if (index > size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //返回异常信息
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    //删除与传入集合中元素相同的元素
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return batchRemove(c, false);
+    }
+
+    //只保留与传入集合中元素相同的元素
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return batchRemove(c, true);
+    }
+
+    //与ArrayList.batchRemove相同，c.contains抛出异常时保留r之后的元素
+    private boolean batchRemove(Collection<?> c, boolean complement) {
+        final double[] elementData = this.elementData;
+        int r = 0, w = 0;
+        boolean modified = false;
+        try {
+            for (; r < size; r++)
+                if (c.contains(elementData[r]) == complement)
+                    elementData[w++] = elementData[r];
+        } finally {
+            // Preserve behavioral compatibility with AbstractCollection,
+            // even if c.contains() throws.
+            if (r != size) {
+                System.arraycopy(elementData, r,
+                        elementData, w,
+                        size - r);
+                w += size - r;
+            }
+            if (w != size) {
+                modCount += size - w;
+                size = w;
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    //私有方法，序列化，直接写出基本类型值
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException{
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+
+        s.writeInt(size);
+
+        for (int i=0; i<size; i++) {
+            s.writeDouble(elementData[i]);
+        }
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //私有方法，反序列化
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        elementData = EMPTY_ELEMENTDATA;
+        growthPolicy = null;
+
+        s.defaultReadObject();
+
+        s.readInt(); // ignored
+
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+        if (size > 0) {
+            ensureCapacityInternal(size);
+
+            double[] a = elementData;
+            for (int i=0; i<size; i++) {
+                a[i] = s.readDouble();
+            }
+        }
+    }
+
+    //对每个值进行传入规则处理，不装箱
+    public void forEachDouble(DoubleConsumer action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        final double[] elementData = this.elementData;
+        final int size = this.size;
+        for (int i=0; modCount == expectedModCount && i < size; i++) {
+            action.accept(elementData[i]);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //boxed版本
+    @Override
+    public void forEach(Consumer<? super Double> action) {
+        Objects.requireNonNull(action);
+        if (action instanceof DoubleConsumer) {
+            forEachDouble((DoubleConsumer) action);
+        } else {
+            forEachDouble((DoubleConsumer) action::accept);
+        }
+    }
+
+    //返回一个基本类型的分割器
+    @Override
+    public Spliterator.OfDouble spliterator() {
+        return new DoubleArrayListSpliterator(this, 0, -1, 0);
+    }
+
+    //返回一个不装箱的顺序流
+    public DoubleStream doubleStream() {
+        return StreamSupport.doubleStream(spliterator(), false);
+    }
+
+    //返回一个不装箱的并行流
+    public DoubleStream parallelDoubleStream() {
+        return StreamSupport.doubleStream(spliterator(), true);
+    }
+
+    //基于索引的，二分分割的，懒加载的分割器，与ArrayList.ArrayListSpliterator相同
+    static final class DoubleArrayListSpliterator implements Spliterator.OfDouble {
+
+        private final DoubleArrayList list;
+        private int index; // current index, modified on advance/split
+        private int fence; // -1 until used; then one past last index
+        private int expectedModCount; // initialized when fence set
+
+        DoubleArrayListSpliterator(DoubleArrayList list, int origin, int fence,
+                             int expectedModCount) {
+            this.list = list; // OK if null unless traversed
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() { // initialize fence to size on first use
+            int hi;
+            DoubleArrayList lst;
+            if ((hi = fence) < 0) {
+                if ((lst = list) == null)
+                    hi = fence = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    hi = fence = lst.size;
+                }
+            }
+            return hi;
+        }
+
+        public DoubleArrayListSpliterator trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null : // divide range in half unless too small
+                    new DoubleArrayListSpliterator(list, lo, index = mid,
+                            expectedModCount);
+        }
+
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (action == null)
+                throw new NullPointerException();
+            int hi = getFence(), i = index;
+            if (i < hi) {
+                index = i + 1;
+                double e = list.elementData[i];
+                action.accept(e);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public void forEachRemaining(DoubleConsumer action) {
+            int i, hi, mc; // hoist accesses and checks from loop
+            DoubleArrayList lst; double[] a;
+            if (action == null)
+                throw new NullPointerException();
+            if ((lst = list) != null && (a = lst.elementData) != null) {
+                if ((hi = fence) < 0) {
+                    mc = lst.modCount;
+                    hi = lst.size;
+                }
+                else
+                    mc = expectedModCount;
+                if ((i = index) >= 0 && (index = hi) <= a.length) {
+                    for (; i < hi; ++i) {
+                        action.accept(a[i]);
+                    }
+                    if (lst.modCount == mc)
+                        return;
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            return (long) (getFence() - index);
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    //删除满足传入规则的值，规则抛出异常时列表不会被修改，不装箱
+    public boolean removeIfDouble(DoublePredicate filter) {
+        Objects.requireNonNull(filter);
+        // figure out which elements are to be removed
+        // any exception thrown from the filter predicate at this stage
+        // will leave the collection unmodified
+        final int expectedModCount = modCount;
+        final int size = this.size;
+        //先找到第一个要删除的值，没有值满足条件时不分配位图
+        int beg = 0;
+        for (; modCount == expectedModCount && beg < size; beg++) {
+            if (filter.test(elementData[beg]))
+                break;
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (beg >= size)
+            return false;
+
+        //从beg开始用位图记录要删除的值，第k位对应下标beg+k
+        int removeCount = 1;
+        final BitSet removeSet = new BitSet(size - beg);
+        removeSet.set(0);
+        for (int i=beg+1; modCount == expectedModCount && i < size; i++) {
+            if (filter.test(elementData[i])) {
+                removeSet.set(i - beg);
+                removeCount++;
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+
+        // shift surviving elements left over the spaces left by removed elements
+        final int newSize = size - removeCount;
+        for (int i=beg, j=beg; (i < size) && (j < newSize); i++, j++) {
+            i = beg + removeSet.nextClearBit(i - beg);
+            elementData[j] = elementData[i];
+        }
+        this.size = newSize;
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+        return true;
+    }
+
+    //boxed版本
+    @Override
+    public boolean removeIf(Predicate<? super Double> filter) {
+        Objects.requireNonNull(filter);
+        return removeIfDouble((DoublePredicate) filter::test);
+    }
+
+    //按照传入的规则替换每个值，不装箱
+    public void replaceAllDouble(DoubleUnaryOperator operator) {
+        Objects.requireNonNull(operator);
+        final int expectedModCount = modCount;
+        final int size = this.size;
+        for (int i=0; modCount == expectedModCount && i < size; i++) {
+            elementData[i] = operator.applyAsDouble(elementData[i]);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    //boxed版本
+    @Override
+    public void replaceAll(UnaryOperator<Double> operator) {
+        Objects.requireNonNull(operator);
+        replaceAllDouble((DoubleUnaryOperator) operator::apply);
+    }
+
+    //按自然顺序排序，使用基本类型的Arrays.sort，不装箱
+    public void sort() {
+        final int expectedModCount = modCount;
+        Arrays.sort(elementData, 0, size);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    //传入的比较器为null时按自然顺序排序，不装箱；否则装箱后按比较器排序
+    @Override
+    public void sort(Comparator<? super Double> c) {
+        if (c == null) {
+            sort();
+            return;
+        }
+        final int expectedModCount = modCount;
+        Double[] boxed = new Double[size];
+        for (int i = 0; i < size; i++)
+            boxed[i] = elementData[i];
+        Arrays.sort(boxed, c);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        for (int i = 0; i < size; i++)
+            elementData[i] = boxed[i];
+        modCount++;
+    }
+
+    //hashCode与List<Double>的约定一致，但不装箱
+    public int hashCode() {
+        int hashCode = 1;
+        for (int i = 0; i < size; i++)
+            hashCode = 31*hashCode + Double.hashCode(elementData[i]);
+        return hashCode;
+    }
+
+    //另一个DoubleArrayList时直接比较数组，否则按List的约定比较
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof DoubleArrayList))
+            return super.equals(o);
+        DoubleArrayList other = (DoubleArrayList) o;
+        if (other.size != size)
+            return false;
+        for (int i = 0; i < size; i++)
+            if (!(Double.doubleToLongBits(elementData[i]) == Double.doubleToLongBits(other.elementData[i])))
+                return false;
+        return true;
+    }
+}
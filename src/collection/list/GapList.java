@@ -0,0 +1,554 @@
+
+package java.util;
+
+import java.util.function.Consumer;
+
+
+/*
+    间隙缓冲区（gap buffer）实现的List。
+    ArrayList的add(int, E)和remove(int)每次都要用System.arraycopy移动index之后的所有元素，
+    在编辑器这类总是在某个位置附近连续插入、删除的场景中，每次操作都是O(n)。
+    这个类在数组中保留一段空闲区域（间隙），间隙总是停在上一次修改的位置：
+    elementData[0, gapStart)是下标为[0, gapStart)的元素，
+    elementData[gapEnd, elementData.length)是下标为[gapStart, size)的元素。
+    在间隙处插入、删除只需要移动间隙的边界，是O(1)的；在别处修改时先把间隙移过去，
+    只移动两个位置之间的元素，所以在上一次修改位置附近操作的均摊开销是O(1)。
+    get、set只多一次与gapStart的比较，仍然是RandomAccess。
+    扩容使用ArrayList.GrowthPolicy，subList的下标检查与ArrayList相同。
+*/
+public class GapList<E> extends AbstractList<E>
+        implements List<E>, RandomAccess, Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = 4473612893530270311L;
+
+    //默认容量
+    private static final int DEFAULT_CAPACITY = 10;
+
+    //数组最大长度
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    //空数组
+    private static final Object[] EMPTY_ELEMENTDATA = {};
+
+    //存储元素的数组，[gapStart, gapEnd)为间隙，间隙中的位置都为null
+    //transient关键字表示序列化时不序列化该字段
+    transient Object[] elementData;
+
+    //间隙的开始位置（包含），也是间隙之前的元素个数
+    private transient int gapStart;
+
+    //间隙的结束位置（不包含）
+    private transient int gapEnd;
+
+    //扩容策略，不参与序列化，反序列化后恢复为默认策略
+    private transient ArrayList.GrowthPolicy growthPolicy = ArrayList.GrowthPolicy.DEFAULT;
+
+    //创建一个空的GapList，第一次添加元素时才分配数组
+    public GapList() {
+        this.elementData = EMPTY_ELEMENTDATA;
+    }
+
+    //创建一个初始容量为initialCapacity、空的GapList
+    public GapList(int initialCapacity) {
+        this(initialCapacity, ArrayList.GrowthPolicy.DEFAULT);
+    }
+
+    //创建一个初始容量为initialCapacity、使用指定扩容策略的空GapList
+    public GapList(int initialCapacity, ArrayList.GrowthPolicy growthPolicy) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        this.growthPolicy = Objects.requireNonNull(growthPolicy);
+        this.elementData = (initialCapacity == 0) ? EMPTY_ELEMENTDATA : new Object[initialCapacity];
+        this.gapEnd = initialCapacity;
+    }
+
+    //创建一个包含collection的所有元素的GapList，间隙在末尾
+    public GapList(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        if (a.getClass() != Object[].class)
+            a = Arrays.copyOf(a, a.length, Object[].class);
+        this.elementData = (a.length == 0) ? EMPTY_ELEMENTDATA : a;
+        this.gapStart = a.length;
+        this.gapEnd = a.length;
+    }
+
+    //下标index的元素在数组中的位置
+    private int physical(int index) {
+        return (index < gapStart) ? index : index + (gapEnd - gapStart);
+    }
+
+    /*
+        把间隙移动到下标index处，移动后gapStart == index。
+        index在间隙之前时，把[index, gapStart)的元素移到间隙之后；
+        index在间隙之后时，把间隙之后的index - gapStart个元素移到间隙之前。
+        移动后将新间隙中残留的元素置为null。
+    */
+    private void moveGap(int index) {
+        final Object[] a = elementData;
+        final int gapLen = gapEnd - gapStart;
+        if (index < gapStart) {
+            int n = gapStart - index;
+            System.arraycopy(a, index, a, index + gapLen, n);
+            Arrays.fill(a, index, Math.min(gapStart, index + gapLen), null);
+        } else if (index > gapStart) {
+            int n = index - gapStart;
+            System.arraycopy(a, gapEnd, a, gapStart, n);
+            Arrays.fill(a, Math.max(gapEnd, index), index + gapLen, null);
+        } else {
+            return;
+        }
+        gapStart = index;
+        gapEnd = index + gapLen;
+    }
+
+    //保证间隙中至少有n个位置
+    private void ensureGap(int n) {
+        if (gapEnd - gapStart < n)
+            grow(size() + n);
+    }
+
+    //按扩容策略扩容，间隙之后的元素复制到新数组的末尾，间隙随之变大
+    private void grow(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        int oldCapacity = elementData.length;
+        int newCapacity = growthPolicy.newCapacity(oldCapacity, minCapacity);
+        //与ArrayList相同，空数组第一次扩容至少分配默认容量
+        if (oldCapacity == 0 && newCapacity < DEFAULT_CAPACITY)
+            newCapacity = DEFAULT_CAPACITY;
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = (minCapacity > MAX_ARRAY_SIZE) ? Integer.MAX_VALUE : MAX_ARRAY_SIZE;
+        resize(newCapacity);
+    }
+
+    //分配长度为newCapacity的新数组，元素之间的间隙相应变大或变小
+    private void resize(int newCapacity) {
+        Object[] a = elementData;
+        int tail = a.length - gapEnd;
+        Object[] b = (newCapacity == 0) ? EMPTY_ELEMENTDATA : new Object[newCapacity];
+        System.arraycopy(a, 0, b, 0, gapStart);
+        System.arraycopy(a, gapEnd, b, newCapacity - tail, tail);
+        elementData = b;
+        gapEnd = newCapacity - tail;
+    }
+
+    //保证容量至少为minCapacity
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elementData.length) {
+            modCount++;
+            grow(minCapacity);
+        }
+    }
+
+    //将数组缩小到元素个数，间隙移到末尾并变为空
+    public void trimToSize() {
+        modCount++;
+        if (size() < elementData.length)
+            resize(size());
+    }
+
+    //返回当前的扩容策略
+    public ArrayList.GrowthPolicy growthPolicy() {
+        return growthPolicy;
+    }
+
+    //更换扩容策略，只影响之后的扩容
+    public void setGrowthPolicy(ArrayList.GrowthPolicy growthPolicy) {
+        this.growthPolicy = Objects.requireNonNull(growthPolicy);
+    }
+
+    //返回间隙的位置，即上一次修改的位置，在它附近插入、删除的开销最小
+    public int gapPosition() {
+        return gapStart;
+    }
+
+    public int size() {
+        return elementData.length - (gapEnd - gapStart);
+    }
+
+    public boolean isEmpty() {
+        return gapStart == 0 && gapEnd == elementData.length;
+    }
+
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    //返回传入对象第一次出现的下标，先查找间隙之前的部分，再查找间隙之后的部分
+    public int indexOf(Object o) {
+        final Object[] a = elementData;
+        final int gapLen = gapEnd - gapStart;
+        if (o == null) {
+            for (int i = 0; i < gapStart; i++)
+                if (a[i] == null)
+                    return i;
+            for (int i = gapEnd; i < a.length; i++)
+                if (a[i] == null)
+                    return i - gapLen;
+        } else {
+            for (int i = 0; i < gapStart; i++)
+                if (o.equals(a[i]))
+                    return i;
+            for (int i = gapEnd; i < a.length; i++)
+                if (o.equals(a[i]))
+                    return i - gapLen;
+        }
+        return -1;
+    }
+
+    //返回传入对象最后一次出现的下标
+    public int lastIndexOf(Object o) {
+        final Object[] a = elementData;
+        final int gapLen = gapEnd - gapStart;
+        if (o == null) {
+            for (int i = a.length - 1; i >= gapEnd; i--)
+                if (a[i] == null)
+                    return i - gapLen;
+            for (int i = gapStart - 1; i >= 0; i--)
+                if (a[i] == null)
+                    return i;
+        } else {
+            for (int i = a.length - 1; i >= gapEnd; i--)
+                if (o.equals(a[i]))
+                    return i - gapLen;
+            for (int i = gapStart - 1; i >= 0; i--)
+                if (o.equals(a[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    E elementData(int index) {
+        return (E) elementData[physical(index)];
+    }
+
+    public E get(int index) {
+        rangeCheck(index);
+        return elementData(index);
+    }
+
+    public E set(int index, E element) {
+        rangeCheck(index);
+        int p = physical(index);
+        @SuppressWarnings("unchecked") E oldValue = (E) elementData[p];
+        elementData[p] = element;
+        return oldValue;
+    }
+
+    //在末尾添加元素，间隙不在末尾时先移过去
+    public boolean add(E e) {
+        add(size(), e);
+        return true;
+    }
+
+    //在index处插入元素：把间隙移到index，放入间隙的第一个位置
+    public void add(int index, E element) {
+        rangeCheckForAdd(index);
+        modCount++;
+        ensureGap(1);
+        moveGap(index);
+        elementData[gapStart++] = element;
+    }
+
+    /*
+        删除index处的元素：index在间隙之前时，把间隙移到index + 1，再把间隙向前扩大一位；
+        否则把间隙移到index，再把间隙向后扩大一位。
+        这样在间隙前面删除（退格）和在间隙后面删除都不需要移动元素。
+    */
+    public E remove(int index) {
+        rangeCheck(index);
+        modCount++;
+        final Object[] a = elementData;
+        E oldValue;
+        if (index < gapStart) {
+            moveGap(index + 1);
+            oldValue = elementData(index);
+            a[--gapStart] = null;
+        } else {
+            moveGap(index);
+            @SuppressWarnings("unchecked") E e = (E) a[gapEnd];
+            oldValue = e;
+            a[gapEnd++] = null;
+        }
+        return oldValue;
+    }
+
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    //清空所有元素，保留数组，间隙变为整个数组
+    public void clear() {
+        modCount++;
+        Arrays.fill(elementData, 0, gapStart, null);
+        Arrays.fill(elementData, gapEnd, elementData.length, null);
+        gapStart = 0;
+        gapEnd = elementData.length;
+    }
+
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size(), c);
+    }
+
+    //把间隙移到index，将集合中的元素复制到间隙的开头
+    public boolean addAll(int index, Collection<? extends E> c) {
+        rangeCheckForAdd(index);
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        modCount++;
+        if (numNew == 0)
+            return false;
+        ensureGap(numNew);
+        moveGap(index);
+        System.arraycopy(a, 0, elementData, gapStart, numNew);
+        gapStart += numNew;
+        return true;
+    }
+
+    //把间隙移到fromIndex，再把间隙向后扩大toIndex - fromIndex个位置
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        moveGap(fromIndex);
+        int newGapEnd = gapEnd + (toIndex - fromIndex);
+        Arrays.fill(elementData, gapEnd, newGapEnd, null);
+        gapEnd = newGapEnd;
+    }
+
+    //排序前把间隙移到末尾，元素就是连续的
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        final int expectedModCount = modCount;
+        int size = size();
+        moveGap(size);
+        Arrays.sort((E[]) elementData, 0, size, c);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        modCount++;
+    }
+
+    //检查子列表的下标，与ArrayList.subList相同
+    public List<E> subList(int fromIndex, int toIndex) {
+        ArrayList.subListRangeCheck(fromIndex, toIndex, size());
+        return super.subList(fromIndex, toIndex);
+    }
+
+    //检查传入下标是否越界
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //检查添加元素时，传入下标是否大于元素个数或者小于0
+    private void rangeCheckForAdd(int index) {
+        if (index > size() || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //返回异常信息
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size();
+    }
+
+    //返回所有元素组成的数组，分别复制间隙前后两部分
+    public Object[] toArray() {
+        Object[] a = new Object[size()];
+        copyOut(a);
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        int n = size();
+        if (a.length < n)
+            a = (T[]) java.lang.reflect.Array.newInstance(
+                    a.getClass().getComponentType(), n);
+        copyOut(a);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    private void copyOut(Object[] a) {
+        System.arraycopy(elementData, 0, a, 0, gapStart);
+        System.arraycopy(elementData, gapEnd, a, gapStart, elementData.length - gapEnd);
+    }
+
+    //克隆，数组按元素个数复制，间隙在末尾
+    public Object clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            GapList<E> v = (GapList<E>) super.clone();
+            v.elementData = toArray();
+            v.gapStart = v.gapEnd = v.elementData.length;
+            v.modCount = 0;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+    }
+
+    //遍历所有元素，分别遍历间隙前后两部分
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        final Object[] a = elementData;
+        final int gapStart = this.gapStart, gapEnd = this.gapEnd;
+        for (int i = 0; i < gapStart && modCount == expectedModCount; i++) {
+            @SuppressWarnings("unchecked") E e = (E) a[i];
+            action.accept(e);
+        }
+        for (int i = gapEnd; i < a.length && modCount == expectedModCount; i++) {
+            @SuppressWarnings("unchecked") E e = (E) a[i];
+            action.accept(e);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //序列化：写出元素个数和所有元素，不写出间隙
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+        s.writeInt(size());
+        final Object[] a = elementData;
+        for (int i = 0; i < gapStart; i++)
+            s.writeObject(a[i]);
+        for (int i = gapEnd; i < a.length; i++)
+            s.writeObject(a[i]);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //反序列化：按元素个数分配数组，间隙在末尾且为空
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        growthPolicy = ArrayList.GrowthPolicy.DEFAULT;
+        int size = s.readInt();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+        Object[] a = (size == 0) ? EMPTY_ELEMENTDATA : new Object[size];
+        for (int i = 0; i < size; i++)
+            a[i] = s.readObject();
+        elementData = a;
+        gapStart = gapEnd = size;
+    }
+
+    //返回一个分割器，按逻辑下标分割，遍历时跳过间隙
+    @Override
+    public Spliterator<E> spliterator() {
+        return new GapSpliterator<>(this, 0, -1, 0);
+    }
+
+    /*
+        结构与ArrayList.ArrayListSpliterator相同，下标为逻辑下标；
+        forEachRemaining把[index, fence)分成间隙前后两段，每段直接遍历数组。
+    */
+    static final class GapSpliterator<E> implements Spliterator<E> {
+
+        private final GapList<E> list;
+        //分割器起始索引（包含）
+        private int index; // current index, modified on advance/split
+        //分割器末尾索引（不包含），-1表示到最后一个元素
+        private int fence; // -1 until used; then one past last index
+        private int expectedModCount; // initialized when fence set
+
+        GapSpliterator(GapList<E> list, int origin, int fence,
+                       int expectedModCount) {
+            this.list = list; // OK if null unless traversed
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        //获取实际末尾索引
+        private int getFence() { // initialize fence to size on first use
+            int hi;
+            GapList<E> lst;
+            if ((hi = fence) < 0) {
+                if ((lst = list) == null)
+                    hi = fence = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    hi = fence = lst.size();
+                }
+            }
+            return hi;
+        }
+
+        public GapSpliterator<E> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null : // divide range in half unless too small
+                    new GapSpliterator<E>(list, lo, index = mid,
+                            expectedModCount);
+        }
+
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int hi = getFence(), i = index;
+            if (i < hi) {
+                index = i + 1;
+                E e = list.elementData(i);
+                action.accept(e);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public void forEachRemaining(Consumer<? super E> action) {
+            int i, hi, mc; // hoist accesses and checks from loop
+            GapList<E> lst; Object[] a;
+            if (action == null)
+                throw new NullPointerException();
+            if ((lst = list) != null && (a = lst.elementData) != null) {
+                if ((hi = fence) < 0) {
+                    mc = lst.modCount;
+                    hi = lst.size();
+                }
+                else
+                    mc = expectedModCount;
+                if ((i = index) >= 0 && (index = hi) <= lst.size()) {
+                    int gs = lst.gapStart, gapLen = lst.gapEnd - gs;
+                    //间隙之前的部分
+                    for (int end = Math.min(hi, gs); i < end; i++) {
+                        @SuppressWarnings("unchecked") E e = (E) a[i];
+                        action.accept(e);
+                    }
+                    //间隙之后的部分
+                    for (; i < hi; i++) {
+                        @SuppressWarnings("unchecked") E e = (E) a[i + gapLen];
+                        action.accept(e);
+                    }
+                    if (lst.modCount == mc)
+                        return;
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            return (long) (getFence() - index);
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
@@ -26,6 +26,8 @@
 package java.util;
 
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 
 public class LinkedList<E>
@@ -44,6 +46,17 @@ public class LinkedList<E>
     //末尾节点
     transient Node<E> last;
 
+    /*
+        最近一次按下标访问的节点（finger），node(index)从first、last和finger中离index最近的一个开始遍历，
+        这样for (i..) list.get(i)这样的顺序访问平均每次只需走几步。
+        finger记录了创建时的modCount，链表发生结构修改后自动失效，所以addFirst、pollFirst等Deque操作不需要维护它。
+        Finger是不可变对象，多个线程同时读取未被修改的链表时，不会读到不一致的节点和下标。
+    */
+    private transient Finger<E> finger;
+
+    //操作计数器，默认为null即不计数，见ListMetrics
+    transient ListMetrics metrics;
+
 
     public LinkedList() {
     }
@@ -94,6 +107,25 @@ public class LinkedList<E>
         modCount++;
     }
 
+    //将数组a中前n个元素依次链接到末尾，一次性更新last、size和modCount，供ListCodec分批构建节点
+    void linkAllLast(Object[] a, int n) {
+        if (n == 0)
+            return;
+        Node<E> pred = last;
+        for (int i = 0; i < n; i++) {
+            @SuppressWarnings("unchecked") E e = (E) a[i];
+            Node<E> newNode = new Node<>(pred, e, null);
+            if (pred == null)
+                first = newNode;
+            else
+                pred.next = newNode;
+            pred = newNode;
+        }
+        last = pred;
+        size += n;
+        modCount++;
+    }
+
     //生成新节点，值为e，并且插入在链表中succ节点的前面
     void linkBefore(E e, Node<E> succ) {
         // assert succ != null;
@@ -369,6 +401,88 @@ public class LinkedList<E>
         return true;
     }
 
+    //删除链表中与传入集合中元素相同的节点
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return batchRemove(c, false);
+    }
+
+    //只保留链表中与传入集合中元素相同的节点
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return batchRemove(c, true);
+    }
+
+    /*
+        顺序遍历链表，断开需要删除的节点。
+        参数是较大的List时，先转成HashSet再查找，见ArrayList.batchLookup。
+        c.contains抛出异常时，已经删除的节点不会恢复，与AbstractCollection的行为相同。
+    */
+    private boolean batchRemove(Collection<?> c, boolean complement) {
+        c = ArrayList.batchLookup(c, size);
+        Object event = ListEvents.beginBulk();
+        final int oldSize = size;
+        boolean modified = false;
+        //调用c.contains的次数
+        int lookups = 0;
+        for (Node<E> x = first; x != null; lookups++) {
+            //先记录后继节点，因为unlink会将x.next置为null
+            Node<E> next = x.next;
+            if (c.contains(x.item) != complement) {
+                unlink(x);
+                modified = true;
+            }
+            x = next;
+        }
+        if (metrics != null)
+            metrics.recordBatchRemove(lookups);
+        if (event != null)
+            ListEvents.commitBulk(event, this, complement ? "retainAll" : "removeAll", oldSize, size);
+        return modified;
+    }
+
+    /*
+        删除链表中满足传入规则的节点，直接沿着节点链表遍历并断开节点，不创建迭代器。
+        与Collection.removeIf的默认实现相同，filter抛出异常时，已经删除的节点不会恢复。
+    */
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        Object event = ListEvents.beginBulk();
+        final int oldSize = size;
+        //每断开一个节点modCount加一，expectedModCount跟着加一
+        int expectedModCount = modCount;
+        boolean removed = false;
+        for (Node<E> x = first; x != null && modCount == expectedModCount; ) {
+            //先记录后继节点，因为unlink会将x.next置为null
+            Node<E> next = x.next;
+            if (filter.test(x.item)) {
+                unlink(x);
+                expectedModCount++;
+                removed = true;
+            }
+            x = next;
+        }
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+        if (event != null)
+            ListEvents.commitBulk(event, this, "removeIf", oldSize, size);
+        return removed;
+    }
+
+    //按照传入的规则替换每个节点的值，直接沿着节点链表遍历，不创建迭代器
+    @Override
+    public void replaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        final int expectedModCount = modCount;
+        for (Node<E> x = first; x != null && modCount == expectedModCount; x = x.next)
+            x.item = operator.apply(x.item);
+        if (modCount != expectedModCount) {
+            throw comodification();
+        }
+    }
+
     //清空链表，将链表中所有节点删除
     public void clear() {
         // Clearing all of the links between nodes is "unnecessary", but:
@@ -385,6 +499,7 @@ public class LinkedList<E>
         }
         //更新头节点和末尾节点为null
         first = last = null;
+        finger = null;
         //更新节点个数为0
         size = 0;
         modCount++;
@@ -421,16 +536,34 @@ public class LinkedList<E>
         //若传入索引等于节点个数，则直接生成新节点插入到原末尾节点之后
         if (index == size)
             linkLast(element);
-        //反之，则生成新节点插入到指定位置节点之前
-        else
-            linkBefore(element, node(index));
+        //反之，则生成新节点插入到指定位置节点之前，离两端足够远时将finger指向新节点
+        else {
+            Node<E> succ = node(index);
+            linkBefore(element, succ);
+            if (farFromEnds(index))
+                finger = new Finger<>(succ.prev, index, modCount);
+        }
     }
 
     //删除指定位置节点
     public E remove(int index) {
         checkElementIndex(index);
+        Node<E> x = node(index);
+        Node<E> next = x.next;
         //断开指定位置节点连接，并返回该节点值
-        return unlink(node(index));
+        E element = unlink(x);
+        //删除后index位置为原节点的后继节点，离两端足够远时将finger指向它
+        if (next != null && farFromEnds(index))
+            finger = new Finger<>(next, index, modCount);
+        return element;
+    }
+
+    /*
+        结构修改后index离头尾都至少FINGER_UPDATE_DISTANCE时才重新设置finger，与node(index)更新finger的条件相同；
+        靠近两端时从first或last遍历本来就很快，add(0, e)、remove(0)这样的操作不必每次都创建Finger对象。
+    */
+    private boolean farFromEnds(int index) {
+        return index >= FINGER_UPDATE_DISTANCE && size - 1 - index >= FINGER_UPDATE_DISTANCE;
     }
 
     //判断传入索引是否是节点索引
@@ -463,18 +596,87 @@ public class LinkedList<E>
     //获取指定索引的节点
     Node<E> node(int index) {
         // assert isElementIndex(index);
+        //到头节点和末尾节点的距离
+        int fromFirst = index, fromLast = size - 1 - index;
+        //finger有效且离index更近时，从finger开始遍历
+        Finger<E> f = finger;
+        if (f != null && f.modCount == modCount) {
+            int d = index - f.index;
+            int dist = (d < 0) ? -d : d;
+            if (dist < fromFirst && dist < fromLast) {
+                //开启JFR事件时记录较长的遍历，见ListEvents
+                Object event = ListEvents.beginNodeWalk(dist);
+                Node<E> x = f.node;
+                if (d > 0) {
+                    for (int i = 0; i < d; i++)
+                        x = x.next;
+                } else {
+                    for (int i = 0; i > d; i--)
+                        x = x.prev;
+                }
+                if (dist >= FINGER_UPDATE_DISTANCE)
+                    finger = new Finger<>(x, index, modCount);
+                if (metrics != null)
+                    metrics.recordNodeLookup(dist);
+                if (event != null)
+                    ListEvents.commitNodeWalk(event, this, index, size, dist);
+                return x;
+            }
+        }
+        int hops = Math.min(fromFirst, fromLast);
+        Object event = ListEvents.beginNodeWalk(hops);
+        Node<E> x;
         //判断传入索引是大于还是小于节点个数的一半，若小于size的1/2，则顺序遍历获得值
-        if (index < (size >> 1)) {
-            Node<E> x = first;
+        if (fromFirst < fromLast) {
+            x = first;
             for (int i = 0; i < index; i++)
                 x = x.next;
-            return x;
         //若大于size的1/2，则倒序遍历获得值，这样大大提高了速度
         } else {
-            Node<E> x = last;
+            x = last;
             for (int i = size - 1; i > index; i--)
                 x = x.prev;
-            return x;
+        }
+        if (hops >= FINGER_UPDATE_DISTANCE)
+            finger = new Finger<>(x, index, modCount);
+        if (metrics != null)
+            metrics.recordNodeLookup(hops);
+        if (event != null)
+            ListEvents.commitNodeWalk(event, this, index, size, hops);
+        return x;
+    }
+
+    //返回当前的操作计数器，未开启时返回null
+    public ListMetrics metrics() {
+        return metrics;
+    }
+
+    //为该LinkedList开启（metrics不为null）或关闭（metrics为null）操作计数，见ArrayList.setMetrics
+    public void setMetrics(ListMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    //记录一次ConcurrentModificationException，并返回该异常供调用方抛出
+    ConcurrentModificationException comodification() {
+        ListMetrics m = metrics;
+        if (m != null)
+            m.recordComodification();
+        return new ConcurrentModificationException();
+    }
+
+    //遍历的步数达到这个值时才更新finger，顺序访问时平均每FINGER_UPDATE_DISTANCE次访问才创建一个Finger对象
+    private static final int FINGER_UPDATE_DISTANCE = 8;
+
+    //记录节点、节点的下标和创建时的modCount，modCount不一致时finger失效
+    private static final class Finger<E> {
+        final Node<E> node;
+        final int index;
+        final int modCount;
+
+        Finger(Node<E> node, int index, int modCount) {
+            this.node = node;
+            this.index = index;
+            this.modCount = modCount;
         }
     }
 
@@ -778,7 +980,7 @@ public class LinkedList<E>
         //fail-fast机制
         final void checkForComodification() {
             if (modCount != expectedModCount)
-                throw new ConcurrentModificationException();
+                throw comodification();
         }
     }
 
@@ -835,6 +1037,8 @@ public class LinkedList<E>
 
         // Put clone into "virgin" state
         clone.first = clone.last = null;
+        clone.finger = null;
+        clone.metrics = null;
         clone.size = 0;
         clone.modCount = 0;
 
@@ -904,12 +1108,18 @@ public class LinkedList<E>
             linkLast((E)s.readObject());
     }
 
-    //返回一个链表分割器
+    //返回一个链表分割器，元素较少时使用批量复制的LLSpliterator，较多时使用按检查点分割、不复制元素的LLBalancedSpliterator
     @Override
     public Spliterator<E> spliterator() {
-        return new LLSpliterator<E>(this, -1, 0);
+        if (size < BALANCED_SPLIT_THRESHOLD)
+            return new LLSpliterator<E>(this, -1, 0);
+        return new LLBalancedSpliterator<E>(this, null, 0, null, 0, -1, 0);
     }
 
+    //元素个数达到这个值时spliterator使用LLBalancedSpliterator，
+    //LLSpliterator每次分割最多复制BATCH_UNIT的整数倍个元素，元素较少时复制的开销可以忽略
+    static final int BALANCED_SPLIT_THRESHOLD = 1 << 12;
+
     /** A customized variant of Spliterators.IteratorSpliterator */
     static final class LLSpliterator<E> implements Spliterator<E> {
         //实际上是2的10次方，最大的批处理数组的增量
@@ -994,7 +1204,7 @@ public class LinkedList<E>
                 } while (p != null && --n > 0);
             }
             if (list.modCount != expectedModCount)
-                throw new ConcurrentModificationException();
+                throw list.comodification();
         }
 
         //对链表中当前节点进行传入规则操作，并将当前节点指向下一个节点
@@ -1011,7 +1221,153 @@ public class LinkedList<E>
                 //对节点值进行操作
                 action.accept(e);
                 if (list.modCount != expectedModCount)
-                    throw new ConcurrentModificationException();
+                    throw list.comodification();
+                return true;
+            }
+            return false;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    /*
+        不复制元素、均匀分割的链表分割器。
+        LLSpliterator分割时把元素复制到数组中，每次分割的长度只比上一次多BATCH_UNIT，
+        元素很多时分割出的任务大小悬殊，复制量也很大，并行流几乎没有加速。
+        这个分割器第一次trySplit时沿着链表走一遍，每隔step个节点记录一个检查点（最多MAX_CHECKPOINTS个），
+        之后的分割直接在离中点最近的检查点处切开，O(1)完成，两半的元素个数都是准确的（SIZED、SUBSIZED）。
+        检查点数组只读，由分割出的所有分割器共享；只做顺序遍历时不会建立检查点。
+    */
+    static final class LLBalancedSpliterator<E> implements Spliterator<E> {
+        //检查点的最大个数
+        static final int MAX_CHECKPOINTS = 1 << 12;
+        final LinkedList<E> list; // null OK unless traversed
+        //检查点，checkpoints[k]为下标base + k * step的节点，第一次分割前为null
+        Node<E>[] checkpoints;
+        //第一个检查点的下标
+        int base;
+        //相邻检查点的下标间隔
+        int step;
+        //下标为index的节点
+        Node<E> current;      // current node; null until initialized
+        //分割器起始索引（包含）
+        int index;
+        //分割器末尾索引（不包含），-1表示到最后一个元素
+        int fence;            // -1 until first needed
+        int expectedModCount; // initialized when fence set
+
+        LLBalancedSpliterator(LinkedList<E> list, Node<E>[] checkpoints, int base,
+                              Node<E> current, int index, int fence, int expectedModCount) {
+            this.list = list;
+            this.checkpoints = checkpoints;
+            this.base = base;
+            this.current = current;
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        //获取实际末尾索引
+        final int getFence() { // initialize fence to size on first use
+            int hi;
+            final LinkedList<E> lst;
+            if ((hi = fence) < 0) {
+                if ((lst = list) == null)
+                    hi = fence = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    current = lst.first;
+                    hi = fence = lst.size;
+                }
+            }
+            return hi;
+        }
+
+        //从p开始向后走n步，链表被修改导致提前遇到null时抛出ConcurrentModificationException异常（计入list的metrics）
+        private Node<E> walk(Node<E> p, int n) {
+            for (; n > 0; n--) {
+                if (p == null)
+                    throw list.comodification();
+                p = p.next;
+            }
+            if (p == null)
+                throw list.comodification();
+            return p;
+        }
+
+        //从current开始沿着链表走一遍[index, fence)，每隔step个节点记录一个检查点
+        @SuppressWarnings("unchecked")
+        private void buildCheckpoints(int lo, int hi) {
+            int n = hi - lo;
+            int step = (n + MAX_CHECKPOINTS - 1) / MAX_CHECKPOINTS;
+            Node<E>[] cps = (Node<E>[]) new Node<?>[(n + step - 1) / step];
+            Node<E> p = current;
+            for (int k = 0; k < cps.length; k++) {
+                cps[k] = p;
+                if (k + 1 < cps.length)
+                    p = walk(p, step);
+            }
+            this.checkpoints = cps;
+            this.base = lo;
+            this.step = step;
+        }
+
+        public long estimateSize() { return (long) (getFence() - index); }
+
+        //在离中点最近的检查点处分割，中点附近没有检查点时（范围小于step）从current走到中点
+        public Spliterator<E> trySplit() {
+            int hi = getFence(), lo = index;
+            if (hi - lo < 2 || current == null)
+                return null;
+            if (checkpoints == null)
+                buildCheckpoints(lo, hi);
+            int mid = (lo + hi) >>> 1;
+            int k = (mid - base) / step;
+            int cp = base + k * step;
+            Node<E> midNode;
+            if (cp > lo) {
+                mid = cp;
+                midNode = checkpoints[k];
+            } else
+                midNode = walk(current, mid - lo);
+            LLBalancedSpliterator<E> prefix = new LLBalancedSpliterator<E>(
+                    list, checkpoints, base, current, lo, mid, expectedModCount);
+            prefix.step = step;
+            current = midNode;
+            index = mid;
+            return prefix;
+        }
+
+        //对剩余的节点进行传入规则操作
+        public void forEachRemaining(Consumer<? super E> action) {
+            Node<E> p; int n;
+            if (action == null) throw new NullPointerException();
+            if ((n = getFence() - index) > 0 && (p = current) != null) {
+                current = null;
+                index = fence;
+                do {
+                    E e = p.item;
+                    p = p.next;
+                    action.accept(e);
+                } while (p != null && --n > 0);
+            }
+            if (list.modCount != expectedModCount)
+                throw list.comodification();
+        }
+
+        //对当前节点进行传入规则操作，并将当前节点指向下一个节点
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Node<E> p;
+            if (action == null) throw new NullPointerException();
+            if (getFence() > index && (p = current) != null) {
+                ++index;
+                E e = p.item;
+                current = p.next;
+                action.accept(e);
+                if (list.modCount != expectedModCount)
+                    throw list.comodification();
                 return true;
             }
             return false;
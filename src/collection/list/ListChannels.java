@@ -0,0 +1,165 @@
+
+package java.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+
+/*
+    在ByteBuffer列表和通道之间批量传输数据。
+    write用GatheringByteChannel.write(ByteBuffer[], int, int)一次写出多个缓冲区，
+    read用ScatteringByteChannel.read(ByteBuffer[], int, int)一次填充多个预先分配好的缓冲区，
+    每次最多MAX_BATCH个缓冲区，整个列表只需要很少几次系统调用，也不会复制缓冲区中的数据。
+
+    传输按每个缓冲区的position和limit进行，传输后position前移，与直接调用通道的方法相同。
+    ArrayList直接遍历elementData，其他列表（例如LinkedList沿着节点链表）用迭代器遍历，
+    传输过程中列表发生结构修改时抛出ConcurrentModificationException异常。
+
+    非阻塞通道一次可能只接受一部分数据，这时用cursor创建的Cursor，它记录下一个未完成的缓冲区，
+    通道再次可写（可读）时继续调用Cursor的write（read）即可从中断的位置继续，不需要从头查找。
+*/
+public final class ListChannels {
+
+    private ListChannels() {
+    }
+
+    //一次gathering/scattering调用最多传入的缓冲区个数，Linux的IOV_MAX为1024
+    static final int MAX_BATCH = 1024;
+
+    /*
+        将列表中所有缓冲区剩余的数据写入通道，返回写出的字节数。
+        阻塞通道会写完全部数据；非阻塞通道暂时不能再写时提前返回，需要继续写时请使用cursor。
+    */
+    public static long write(List<? extends ByteBuffer> buffers, GatheringByteChannel channel)
+            throws IOException {
+        return new Cursor(buffers).write(channel);
+    }
+
+    /*
+        从通道读取数据依次填满列表中的缓冲区，返回读取的字节数，一个字节都没有读到就到达流末尾时返回-1。
+        阻塞通道会一直读到所有缓冲区都填满或者到达流末尾。
+    */
+    public static long read(ScatteringByteChannel channel, List<? extends ByteBuffer> buffers)
+            throws IOException {
+        return new Cursor(buffers).read(channel);
+    }
+
+    //返回列表的传输位置，用于分多次写出或读入
+    public static Cursor cursor(List<? extends ByteBuffer> buffers) {
+        return new Cursor(buffers);
+    }
+
+    /*
+        列表的传输位置：当前批中还没有传输完的缓冲区，以及下一个要装入批中的元素下标。
+        同一个Cursor可以多次调用write或read，每次从上一次停下的缓冲区继续。
+        Cursor不是线程安全的。
+    */
+    public static final class Cursor {
+        //列表是ArrayList时直接读取elementData，否则使用迭代器
+        private final ArrayList<?> arrayList;
+        private final Iterator<? extends ByteBuffer> iterator;
+        private final int expectedModCount;
+        private final int size;
+
+        //列表是ArrayList时，下一个要装入批中的元素下标
+        private int next;
+
+        //当前批，batch[off, off+len)是还没有传输完的缓冲区
+        private final ByteBuffer[] batch;
+        private int off;
+        private int len;
+
+        //已经传输的字节数
+        private long transferred;
+
+        Cursor(List<? extends ByteBuffer> list) {
+            this.size = list.size();
+            if (list.getClass() == ArrayList.class) {
+                arrayList = (ArrayList<?>) list;
+                iterator = null;
+                expectedModCount = arrayList.modCount;
+            } else {
+                arrayList = null;
+                iterator = list.iterator();
+                expectedModCount = 0;
+            }
+            batch = new ByteBuffer[Math.max(1, Math.min(size, MAX_BATCH))];
+        }
+
+        /*
+            写出数据直到所有缓冲区写完，或者通道暂时不能再写（write返回0），返回这次写出的字节数。
+        */
+        public long write(GatheringByteChannel channel) throws IOException {
+            long total = 0;
+            while (hasRemaining()) {
+                long n = channel.write(batch, off, len);
+                if (n == 0)
+                    break;
+                total += n;
+            }
+            transferred += total;
+            return total;
+        }
+
+        /*
+            读取数据直到所有缓冲区填满，或者通道暂时没有数据（read返回0），返回这次读取的字节数；
+            一个字节都没有读到就到达流末尾时返回-1。
+        */
+        public long read(ScatteringByteChannel channel) throws IOException {
+            long total = 0;
+            while (hasRemaining()) {
+                long n = channel.read(batch, off, len);
+                if (n < 0) {
+                    if (total == 0)
+                        return -1;
+                    break;
+                }
+                if (n == 0)
+                    break;
+                total += n;
+            }
+            transferred += total;
+            return total;
+        }
+
+        //是否还有缓冲区没有传输完
+        public boolean hasRemaining() {
+            //跳过当前批中已经传输完的缓冲区
+            while (len > 0 && !batch[off].hasRemaining()) {
+                batch[off++] = null;
+                len--;
+            }
+            return len > 0 || fill();
+        }
+
+        //返回这个Cursor已经传输的字节数
+        public long transferred() {
+            return transferred;
+        }
+
+        //装入下一批还有剩余空间（数据）的缓冲区，列表中没有这样的缓冲区时返回false
+        private boolean fill() {
+            off = 0;
+            len = 0;
+            if (arrayList != null) {
+                if (arrayList.modCount != expectedModCount)
+                    throw arrayList.comodification();
+                Object[] es = arrayList.elementData;
+                while (len < batch.length && next < size) {
+                    ByteBuffer b = (ByteBuffer) es[next++];
+                    if (b.hasRemaining())
+                        batch[len++] = b;
+                }
+            } else {
+                while (len < batch.length && iterator.hasNext()) {
+                    ByteBuffer b = iterator.next();
+                    if (b.hasRemaining())
+                        batch[len++] = b;
+                }
+            }
+            return len > 0;
+        }
+    }
+}
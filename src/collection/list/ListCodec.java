@@ -0,0 +1,786 @@
+
+package java.util;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+
+/*
+    ArrayList和LinkedList的紧凑二进制编码，用来代替writeObject/readObject逐个元素调用ObjectOutputStream.writeObject。
+    格式：
+    头部    int MAGIC，varint元素个数
+    段      连续的同类型元素组成一段：byte类型标记，varint元素个数，之后是这段元素的数据
+            null         没有数据
+            String       varint字节数 + UTF-8字节
+            Integer/Long zigzag varint
+            Short/Character/Float/Double  定长大端
+            Byte         1字节
+            Boolean      每8个元素打包成1字节
+            自定义类型   由构造时传入的ElementCodec读写，类型标记为CUSTOM_TAG + 下标
+    全部元素类型相同时只有一个段头。
+
+    写入时先把数据放在64KB的缓冲区里，缓冲区满了才整块写出，每块前面有一个int表示块长度；
+    读取时也按整块读入，不会多读块之后的数据，所以编码后的列表可以和其他数据写在同一个流里。
+    DataOutput/DataInput和WritableByteChannel/ReadableByteChannel两种写法产生的格式相同，可以互相读取。
+    通道必须是阻塞模式。
+
+    读取ArrayList时按头部的元素个数预分配数组（最多PRESIZE_LIMIT个），读取LinkedList时每BATCH个元素批量链接一次节点。
+    不需要整个列表时用reader方法逐批读取，见ListStreamReader。
+    没有对应编码的元素类型会抛出NotSerializableException异常。
+*/
+public class ListCodec {
+
+    //自定义元素类型的编码，write和read必须读写相同的字节
+    public interface ElementCodec<T> {
+        //能编码的类型，元素是它的实例（优先精确匹配）时使用这个编码
+        Class<T> type();
+
+        void write(T value, DataOutput out) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    //只支持内置类型的编码
+    public static final ListCodec DEFAULT = new ListCodec();
+
+    //头部的魔数，"LST1"
+    static final int MAGIC = 0x4C535431;
+
+    //块的默认长度
+    static final int BLOCK_SIZE = 1 << 16;
+
+    //解码时每批的元素个数
+    static final int BATCH = 1024;
+
+    //读取ArrayList时按头部的元素个数预分配数组的上限
+    static final int PRESIZE_LIMIT = BATCH * 64;
+
+    //内置类型的标记
+    static final int NULL_TAG = 0;
+    static final int STRING_TAG = 1;
+    static final int INTEGER_TAG = 2;
+    static final int LONG_TAG = 3;
+    static final int DOUBLE_TAG = 4;
+    static final int FLOAT_TAG = 5;
+    static final int SHORT_TAG = 6;
+    static final int BYTE_TAG = 7;
+    static final int CHAR_TAG = 8;
+    static final int BOOLEAN_TAG = 9;
+
+    //自定义类型的标记从这里开始
+    static final int CUSTOM_TAG = 32;
+
+    //自定义类型的最大个数
+    static final int MAX_CUSTOM = 256 - CUSTOM_TAG;
+
+    private final ElementCodec<?>[] codecs;
+
+    //类型到标记的映射，用于精确匹配
+    private final Map<Class<?>, Integer> customTags;
+
+    /*
+        用自定义元素类型的编码创建ListCodec，读写双方必须以相同顺序传入相同的编码。
+        编码个数超过MAX_CUSTOM时抛出IllegalArgumentException异常。
+    */
+    public ListCodec(ElementCodec<?>... codecs) {
+        if (codecs.length > MAX_CUSTOM)
+            throw new IllegalArgumentException("Too many element codecs: " + codecs.length);
+        this.codecs = codecs.clone();
+        this.customTags = new HashMap<>();
+        for (int i = 0; i < this.codecs.length; i++)
+            customTags.putIfAbsent(Objects.requireNonNull(this.codecs[i].type()), CUSTOM_TAG + i);
+    }
+
+    //将列表编码写入out
+    public void write(List<?> list, DataOutput out) throws IOException {
+        BlockWriter w = new BlockWriter(Objects.requireNonNull(out), null);
+        writeElements(list.toArray(), w);
+        w.flushBlock();
+    }
+
+    //将列表编码写入通道
+    public void write(List<?> list, WritableByteChannel channel) throws IOException {
+        BlockWriter w = new BlockWriter(null, Objects.requireNonNull(channel));
+        writeElements(list.toArray(), w);
+        w.flushBlock();
+    }
+
+    //从in读取一个编码后的列表，返回ArrayList
+    public <E> ArrayList<E> readArrayList(DataInput in) throws IOException {
+        return decodeArrayList(new BlockReader(Objects.requireNonNull(in), null));
+    }
+
+    //从通道读取一个编码后的列表，返回ArrayList
+    public <E> ArrayList<E> readArrayList(ReadableByteChannel channel) throws IOException {
+        return decodeArrayList(new BlockReader(null, Objects.requireNonNull(channel)));
+    }
+
+    //从in读取一个编码后的列表，返回LinkedList
+    public <E> LinkedList<E> readLinkedList(DataInput in) throws IOException {
+        return decodeLinkedList(new BlockReader(Objects.requireNonNull(in), null));
+    }
+
+    //从通道读取一个编码后的列表，返回LinkedList
+    public <E> LinkedList<E> readLinkedList(ReadableByteChannel channel) throws IOException {
+        return decodeLinkedList(new BlockReader(null, Objects.requireNonNull(channel)));
+    }
+
+    /*
+        返回逐批读取in中编码列表的ListStreamReader，每批最多BATCH个元素。
+        只读取头部，元素在遍历时才解码，见ListStreamReader。
+    */
+    public <E> ListStreamReader<E> reader(DataInput in) throws IOException {
+        return reader(in, BATCH);
+    }
+
+    //返回逐批读取in中编码列表的ListStreamReader，每批最多batchSize个元素
+    public <E> ListStreamReader<E> reader(DataInput in, int batchSize) throws IOException {
+        return new ListStreamReader<>(new Decoder(this, new BlockReader(Objects.requireNonNull(in), null)), batchSize);
+    }
+
+    //返回逐批读取通道中编码列表的ListStreamReader，每批最多BATCH个元素
+    public <E> ListStreamReader<E> reader(ReadableByteChannel channel) throws IOException {
+        return reader(channel, BATCH);
+    }
+
+    //返回逐批读取通道中编码列表的ListStreamReader，每批最多batchSize个元素
+    public <E> ListStreamReader<E> reader(ReadableByteChannel channel, int batchSize) throws IOException {
+        return new ListStreamReader<>(new Decoder(this, new BlockReader(null, Objects.requireNonNull(channel))), batchSize);
+    }
+
+    private <E> ArrayList<E> decodeArrayList(BlockReader r) throws IOException {
+        Decoder d = new Decoder(this, r);
+        //头部的元素个数来自输入，不能完全相信：预分配最多PRESIZE_LIMIT个，
+        //更大的列表随着数据实际读入由appendAll扩容，伪造的头部不会导致一次分配巨大的数组
+        ArrayList<E> list = new ArrayList<>(Math.min(d.remaining, PRESIZE_LIMIT));
+        Object[] batch = new Object[Math.min(d.remaining, BATCH)];
+        for (int n; (n = d.fill(batch, batch.length)) > 0; )
+            list.appendAll(batch, n);
+        return list;
+    }
+
+    private <E> LinkedList<E> decodeLinkedList(BlockReader r) throws IOException {
+        Decoder d = new Decoder(this, r);
+        LinkedList<E> list = new LinkedList<>();
+        Object[] batch = new Object[Math.min(d.remaining, BATCH)];
+        for (int n; (n = d.fill(batch, batch.length)) > 0; )
+            list.linkAllLast(batch, n);
+        return list;
+    }
+
+    private void writeElements(Object[] a, BlockWriter w) throws IOException {
+        w.writeInt(MAGIC);
+        w.writeVarInt(a.length);
+        for (int i = 0; i < a.length; ) {
+            //找出从i开始类型相同的一段[i, j)
+            int tag = tagOf(a[i]);
+            int j = i + 1;
+            while (j < a.length && tagOf(a[j]) == tag)
+                j++;
+            w.writeByte(tag);
+            w.writeVarInt(j - i);
+            writeRun(tag, a, i, j, w);
+            i = j;
+        }
+    }
+
+    //返回元素的类型标记
+    private int tagOf(Object e) throws NotSerializableException {
+        if (e == null)
+            return NULL_TAG;
+        Class<?> c = e.getClass();
+        if (c == String.class)
+            return STRING_TAG;
+        if (c == Integer.class)
+            return INTEGER_TAG;
+        if (c == Long.class)
+            return LONG_TAG;
+        if (c == Double.class)
+            return DOUBLE_TAG;
+        if (c == Float.class)
+            return FLOAT_TAG;
+        if (c == Short.class)
+            return SHORT_TAG;
+        if (c == Byte.class)
+            return BYTE_TAG;
+        if (c == Character.class)
+            return CHAR_TAG;
+        if (c == Boolean.class)
+            return BOOLEAN_TAG;
+        Integer tag = customTags.get(c);
+        if (tag != null)
+            return tag;
+        for (int i = 0; i < codecs.length; i++)
+            if (codecs[i].type().isInstance(e))
+                return CUSTOM_TAG + i;
+        throw new NotSerializableException(c.getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeRun(int tag, Object[] a, int from, int to, BlockWriter w) throws IOException {
+        switch (tag) {
+            case NULL_TAG:
+                break;
+            case STRING_TAG:
+                for (int i = from; i < to; i++)
+                    w.writeString((String) a[i]);
+                break;
+            case INTEGER_TAG:
+                for (int i = from; i < to; i++) {
+                    int v = (Integer) a[i];
+                    w.writeVarInt((v << 1) ^ (v >> 31));
+                }
+                break;
+            case LONG_TAG:
+                for (int i = from; i < to; i++) {
+                    long v = (Long) a[i];
+                    w.writeVarLong((v << 1) ^ (v >> 63));
+                }
+                break;
+            case DOUBLE_TAG:
+                for (int i = from; i < to; i++)
+                    w.writeDouble((Double) a[i]);
+                break;
+            case FLOAT_TAG:
+                for (int i = from; i < to; i++)
+                    w.writeFloat((Float) a[i]);
+                break;
+            case SHORT_TAG:
+                for (int i = from; i < to; i++)
+                    w.writeShort((Short) a[i]);
+                break;
+            case BYTE_TAG:
+                for (int i = from; i < to; i++)
+                    w.writeByte((Byte) a[i]);
+                break;
+            case CHAR_TAG:
+                for (int i = from; i < to; i++)
+                    w.writeChar((Character) a[i]);
+                break;
+            case BOOLEAN_TAG:
+                //每8个元素打包成1字节，第k个元素对应第k位
+                for (int i = from; i < to; i += 8) {
+                    int bits = 0;
+                    for (int k = 0; k < 8 && i + k < to; k++)
+                        if ((Boolean) a[i + k])
+                            bits |= 1 << k;
+                    w.writeByte(bits);
+                }
+                break;
+            default:
+                ElementCodec<Object> codec = (ElementCodec<Object>) codecs[tag - CUSTOM_TAG];
+                for (int i = from; i < to; i++)
+                    codec.write(a[i], w);
+        }
+    }
+
+    /*
+        从BlockReader中按段解码元素，记录当前段的类型和剩余个数，每次fill最多解码max个元素。
+        读取整个列表和ListStreamReader逐批读取都使用它。
+    */
+    static final class Decoder {
+        final ListCodec codec;
+        final BlockReader in;
+
+        //还没有解码的元素个数
+        int remaining;
+
+        //当前段的类型标记和剩余个数
+        private int tag;
+        private int runLeft;
+
+        //Boolean段当前的字节和下一个要读取的位
+        private int bits;
+        private int bitIndex;
+
+        Decoder(ListCodec codec, BlockReader in) throws IOException {
+            this.codec = codec;
+            this.in = in;
+            if (in.readInt() != MAGIC)
+                throw new StreamCorruptedException("Not an encoded list");
+            remaining = in.readVarInt();
+            if (remaining < 0)
+                throw new StreamCorruptedException("Illegal list size: " + remaining);
+        }
+
+        //解码最多max个元素放入dst，返回解码的个数，全部解码完后返回0
+        int fill(Object[] dst, int max) throws IOException {
+            return fill(dst, 0, max);
+        }
+
+        //解码最多max个元素放入dst中从off开始的位置
+        int fill(Object[] dst, int off, int max) throws IOException {
+            int n = 0;
+            while (n < max && remaining > 0) {
+                if (runLeft == 0)
+                    nextRun();
+                int k = Math.min(max - n, runLeft);
+                decode(dst, off + n, k);
+                n += k;
+                runLeft -= k;
+                remaining -= k;
+            }
+            return n;
+        }
+
+        private void nextRun() throws IOException {
+            tag = in.readUnsignedByte();
+            runLeft = in.readVarInt();
+            if (runLeft <= 0 || runLeft > remaining)
+                throw new StreamCorruptedException("Illegal run length: " + runLeft);
+            if (tag >= CUSTOM_TAG ? tag - CUSTOM_TAG >= codec.codecs.length : tag > BOOLEAN_TAG)
+                throw new StreamCorruptedException("Unknown element tag: " + tag);
+            bitIndex = 8;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void decode(Object[] dst, int off, int k) throws IOException {
+            int end = off + k;
+            BlockReader r = in;
+            switch (tag) {
+                case NULL_TAG:
+                    Arrays.fill(dst, off, end, null);
+                    break;
+                case STRING_TAG:
+                    for (int i = off; i < end; i++)
+                        dst[i] = r.readString();
+                    break;
+                case INTEGER_TAG:
+                    for (int i = off; i < end; i++) {
+                        int u = r.readVarInt();
+                        dst[i] = (u >>> 1) ^ -(u & 1);
+                    }
+                    break;
+                case LONG_TAG:
+                    for (int i = off; i < end; i++) {
+                        long u = r.readVarLong();
+                        dst[i] = (u >>> 1) ^ -(u & 1);
+                    }
+                    break;
+                case DOUBLE_TAG:
+                    for (int i = off; i < end; i++)
+                        dst[i] = r.readDouble();
+                    break;
+                case FLOAT_TAG:
+                    for (int i = off; i < end; i++)
+                        dst[i] = r.readFloat();
+                    break;
+                case SHORT_TAG:
+                    for (int i = off; i < end; i++)
+                        dst[i] = r.readShort();
+                    break;
+                case BYTE_TAG:
+                    for (int i = off; i < end; i++)
+                        dst[i] = r.readByte();
+                    break;
+                case CHAR_TAG:
+                    for (int i = off; i < end; i++)
+                        dst[i] = r.readChar();
+                    break;
+                case BOOLEAN_TAG:
+                    for (int i = off; i < end; i++) {
+                        if (bitIndex == 8) {
+                            bits = r.readUnsignedByte();
+                            bitIndex = 0;
+                        }
+                        dst[i] = (bits & (1 << bitIndex++)) != 0;
+                    }
+                    break;
+                default:
+                    ElementCodec<?> c = codec.codecs[tag - CUSTOM_TAG];
+                    for (int i = off; i < end; i++)
+                        dst[i] = c.read(r);
+            }
+        }
+    }
+
+    /*
+        按块写出的DataOutput，块格式为int长度 + 数据。
+        定长数据和varint写入前先保证缓冲区有足够空间，所以它们不会跨块；字符串和字节数组可以跨块。
+    */
+    static final class BlockWriter implements DataOutput {
+        private final DataOutput out;
+        private final WritableByteChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+
+        BlockWriter(DataOutput out, WritableByteChannel channel) {
+            this.out = out;
+            this.channel = channel;
+            buf.position(4);
+        }
+
+        //剩余空间不足n字节时先写出当前块
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() < n)
+                flushBlock();
+        }
+
+        //写出当前块，块为空时什么也不做
+        void flushBlock() throws IOException {
+            int len = buf.position() - 4;
+            if (len == 0)
+                return;
+            buf.putInt(0, len);
+            if (out != null) {
+                out.write(buf.array(), 0, buf.position());
+            } else {
+                buf.flip();
+                while (buf.hasRemaining())
+                    channel.write(buf);
+            }
+            buf.clear();
+            buf.position(4);
+        }
+
+        void writeVarInt(int v) throws IOException {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        void writeVarLong(long v) throws IOException {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        //varint字节数 + UTF-8字节，全部是ASCII字符时直接写入缓冲区，不创建中间数组
+        void writeString(String s) throws IOException {
+            int n = s.length();
+            int i = 0;
+            while (i < n && s.charAt(i) < 0x80)
+                i++;
+            if (i < n) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(b.length);
+                write(b, 0, b.length);
+                return;
+            }
+            writeVarInt(n);
+            byte[] a = buf.array();
+            for (int k = 0; k < n; ) {
+                ensure(1);
+                int p = buf.position();
+                int m = Math.min(n - k, buf.remaining());
+                for (int q = 0; q < m; q++)
+                    a[p + q] = (byte) s.charAt(k + q);
+                buf.position(p + m);
+                k += m;
+            }
+        }
+
+        public void write(int b) throws IOException {
+            ensure(1);
+            buf.put((byte) b);
+        }
+
+        public void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                ensure(1);
+                int m = Math.min(len, buf.remaining());
+                buf.put(b, off, m);
+                off += m;
+                len -= m;
+            }
+        }
+
+        public void writeBoolean(boolean v) throws IOException {
+            write(v ? 1 : 0);
+        }
+
+        public void writeByte(int v) throws IOException {
+            write(v);
+        }
+
+        public void writeShort(int v) throws IOException {
+            ensure(2);
+            buf.putShort((short) v);
+        }
+
+        public void writeChar(int v) throws IOException {
+            ensure(2);
+            buf.putChar((char) v);
+        }
+
+        public void writeInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        public void writeLong(long v) throws IOException {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        public void writeFloat(float v) throws IOException {
+            ensure(4);
+            buf.putFloat(v);
+        }
+
+        public void writeDouble(double v) throws IOException {
+            ensure(8);
+            buf.putDouble(v);
+        }
+
+        public void writeBytes(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++)
+                write(s.charAt(i));
+        }
+
+        public void writeChars(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++)
+                writeChar(s.charAt(i));
+        }
+
+        //与DataOutputStream.writeUTF相同的modified UTF-8格式
+        public void writeUTF(String s) throws IOException {
+            int n = s.length();
+            int utflen = 0;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                utflen += (c >= 0x0001 && c <= 0x007F) ? 1 : (c > 0x07FF) ? 3 : 2;
+            }
+            if (utflen > 65535)
+                throw new UTFDataFormatException("encoded string too long: " + utflen + " bytes");
+            writeShort(utflen);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    write(c);
+                } else if (c > 0x07FF) {
+                    write(0xE0 | ((c >> 12) & 0x0F));
+                    write(0x80 | ((c >> 6) & 0x3F));
+                    write(0x80 | (c & 0x3F));
+                } else {
+                    write(0xC0 | ((c >> 6) & 0x1F));
+                    write(0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+
+    /*
+        按块读取的DataInput，与BlockWriter对应。
+        每次只读入一个完整的块，不会读取块之后的数据。
+    */
+    static final class BlockReader implements DataInput {
+        private final DataInput in;
+        private final ReadableByteChannel channel;
+        private ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+
+        BlockReader(DataInput in, ReadableByteChannel channel) {
+            this.in = in;
+            this.channel = channel;
+            buf.limit(0);
+        }
+
+        //读入下一个块，没有数据时抛出EOFException异常
+        private void nextBlock() throws IOException {
+            int len;
+            if (in != null) {
+                len = in.readInt();
+                allocate(len);
+                in.readFully(buf.array(), 0, len);
+                buf.limit(len);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(4);
+                readFully(channel, header);
+                len = header.getInt(0);
+                allocate(len);
+                buf.limit(len);
+                readFully(channel, buf);
+                buf.flip();
+            }
+        }
+
+        //准备一个能装下len字节的空缓冲区，块比默认长度大时重新分配
+        private void allocate(int len) throws IOException {
+            if (len <= 0)
+                throw new StreamCorruptedException("Illegal block length: " + len);
+            if (len > buf.capacity())
+                buf = ByteBuffer.allocate(len);
+            buf.clear();
+        }
+
+        private static void readFully(ReadableByteChannel ch, ByteBuffer dst) throws IOException {
+            while (dst.hasRemaining())
+                if (ch.read(dst) < 0)
+                    throw new EOFException();
+        }
+
+        //保证缓冲区中至少有n字节，定长数据不会跨块，当前块用完时才读入下一块
+        private ByteBuffer require(int n) throws IOException {
+            if (!buf.hasRemaining())
+                nextBlock();
+            if (buf.remaining() < n)
+                throw new StreamCorruptedException("Value crosses block boundary");
+            return buf;
+        }
+
+        int readVarInt() throws IOException {
+            ByteBuffer b = require(1);
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int x = b.get();
+                v |= (x & 0x7F) << shift;
+                if (x >= 0)
+                    return v;
+                if (!b.hasRemaining())
+                    break;
+            }
+            throw new StreamCorruptedException("Malformed varint");
+        }
+
+        long readVarLong() throws IOException {
+            ByteBuffer b = require(1);
+            long v = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int x = b.get();
+                v |= (long) (x & 0x7F) << shift;
+                if (x >= 0)
+                    return v;
+                if (!b.hasRemaining())
+                    break;
+            }
+            throw new StreamCorruptedException("Malformed varint");
+        }
+
+        //字节都在当前块中时直接从缓冲区解码，否则先复制到临时数组
+        String readString() throws IOException {
+            int len = readVarInt();
+            if (len < 0)
+                throw new StreamCorruptedException("Illegal string length: " + len);
+            if (len == 0)
+                return "";
+            if (!buf.hasRemaining())
+                nextBlock();
+            if (buf.remaining() >= len) {
+                int p = buf.position();
+                buf.position(p + len);
+                return new String(buf.array(), p, len, StandardCharsets.UTF_8);
+            }
+            byte[] b = new byte[len];
+            readFully(b, 0, len);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        public void readFully(byte[] b) throws IOException {
+            readFully(b, 0, b.length);
+        }
+
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buf.hasRemaining())
+                    nextBlock();
+                int m = Math.min(len, buf.remaining());
+                buf.get(b, off, m);
+                off += m;
+                len -= m;
+            }
+        }
+
+        public int skipBytes(int n) throws IOException {
+            int skipped = 0;
+            while (skipped < n) {
+                if (!buf.hasRemaining()) {
+                    try {
+                        nextBlock();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                }
+                int m = Math.min(n - skipped, buf.remaining());
+                buf.position(buf.position() + m);
+                skipped += m;
+            }
+            return skipped;
+        }
+
+        public boolean readBoolean() throws IOException {
+            return require(1).get() != 0;
+        }
+
+        public byte readByte() throws IOException {
+            return require(1).get();
+        }
+
+        public int readUnsignedByte() throws IOException {
+            return require(1).get() & 0xFF;
+        }
+
+        public short readShort() throws IOException {
+            return require(2).getShort();
+        }
+
+        public int readUnsignedShort() throws IOException {
+            return require(2).getShort() & 0xFFFF;
+        }
+
+        public char readChar() throws IOException {
+            return require(2).getChar();
+        }
+
+        public int readInt() throws IOException {
+            return require(4).getInt();
+        }
+
+        public long readLong() throws IOException {
+            return require(8).getLong();
+        }
+
+        public float readFloat() throws IOException {
+            return require(4).getFloat();
+        }
+
+        public double readDouble() throws IOException {
+            return require(8).getDouble();
+        }
+
+        //与DataInputStream.readLine相同，每个字节作为一个字符，遇到\n、\r或\r\n结束
+        public String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (;;) {
+                if (!buf.hasRemaining()) {
+                    try {
+                        nextBlock();
+                    } catch (EOFException e) {
+                        return sb.length() == 0 ? null : sb.toString();
+                    }
+                }
+                int c = buf.get() & 0xFF;
+                if (c == '\n')
+                    return sb.toString();
+                if (c == '\r') {
+                    if (buf.hasRemaining() && buf.get(buf.position()) == '\n')
+                        buf.get();
+                    return sb.toString();
+                }
+                sb.append((char) c);
+            }
+        }
+
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+    }
+}
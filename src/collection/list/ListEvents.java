@@ -0,0 +1,239 @@
+
+package java.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/*
+    ArrayList和LinkedList的Java Flight Recorder事件：
+    java.util.ListGrow         ArrayList.grow扩容，记录扩容前后的容量和耗时
+    java.util.ListShift        add(int, E)、remove(int)、addAll(int, c)、removeRange中移动的元素个数达到shiftThreshold
+    java.util.ListBulkOperation sort、removeIf、removeAll、retainAll，记录操作前后的元素个数和耗时
+    java.util.ListNodeWalk     LinkedList.node(index)走过的节点个数达到nodeWalkThreshold
+    所有事件都带有调用栈，可以从JFR记录中找到是哪个列表操作导致了分配或延迟的尖峰。
+
+    默认关闭，调用ListEvents.setEnabled(true)后才会创建事件，之后是否写入记录由JFR的记录设置决定。
+    开关不读取系统属性、事件类也不在类初始化时加载，因为ArrayList在虚拟机启动早期就被使用；
+    列表中只以Object类型持有事件对象，关闭时热点路径上只多一次静态字段的判断。
+*/
+public final class ListEvents {
+
+    private ListEvents() {
+    }
+
+    //是否创建事件，只在setEnabled中修改，读取时不加锁，修改后其他线程稍后可见即可
+    static boolean enabled;
+
+    //移动元素个数达到这个值时才创建ListShift事件
+    static int shiftThreshold = 1 << 16;
+
+    //node(index)走过的节点个数达到这个值时才创建ListNodeWalk事件
+    static int nodeWalkThreshold = 1 << 12;
+
+    //事件类是否已经注册到JFR
+    private static boolean registered;
+
+    /*
+        开启或关闭列表事件。
+        第一次开启时先把事件类注册到JFR，然后才打开开关：JFR加载和注册事件类时自身也会使用ArrayList，
+        如果此时开关已经打开，grow会再次加载正在加载的事件类，导致ClassCircularityError。
+    */
+    public static synchronized void setEnabled(boolean on) {
+        if (on && !registered) {
+            FlightRecorder.register(GrowEvent.class);
+            FlightRecorder.register(ShiftEvent.class);
+            FlightRecorder.register(BulkEvent.class);
+            FlightRecorder.register(NodeWalkEvent.class);
+            registered = true;
+        }
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    //设置ListShift事件的阈值（移动的元素个数），小于1时抛出IllegalArgumentException异常
+    public static void setShiftThreshold(int elements) {
+        if (elements < 1)
+            throw new IllegalArgumentException("Illegal threshold: " + elements);
+        shiftThreshold = elements;
+    }
+
+    public static int shiftThreshold() {
+        return shiftThreshold;
+    }
+
+    //设置ListNodeWalk事件的阈值（走过的节点个数），小于1时抛出IllegalArgumentException异常
+    public static void setNodeWalkThreshold(int hops) {
+        if (hops < 1)
+            throw new IllegalArgumentException("Illegal threshold: " + hops);
+        nodeWalkThreshold = hops;
+    }
+
+    public static int nodeWalkThreshold() {
+        return nodeWalkThreshold;
+    }
+
+    /*
+        begin方法在开关关闭（或未达到阈值）时返回null，否则创建事件并开始计时；
+        调用方在操作完成后，事件不为null时调用对应的commit方法。
+    */
+
+    static Object beginGrow() {
+        if (!enabled)
+            return null;
+        GrowEvent event = new GrowEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitGrow(Object e, List<?> list, int oldCapacity, int newCapacity, int size) {
+        GrowEvent event = (GrowEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.listClass = list.getClass();
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = newCapacity;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    static Object beginShift(int moved) {
+        if (!enabled || moved < shiftThreshold)
+            return null;
+        ShiftEvent event = new ShiftEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitShift(Object e, List<?> list, String operation, int index, int moved) {
+        ShiftEvent event = (ShiftEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.listClass = list.getClass();
+            event.operation = operation;
+            event.index = index;
+            event.shifted = moved;
+            event.commit();
+        }
+    }
+
+    static Object beginBulk() {
+        if (!enabled)
+            return null;
+        BulkEvent event = new BulkEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitBulk(Object e, List<?> list, String operation, int sizeBefore, int sizeAfter) {
+        BulkEvent event = (BulkEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.listClass = list.getClass();
+            event.operation = operation;
+            event.sizeBefore = sizeBefore;
+            event.sizeAfter = sizeAfter;
+            event.commit();
+        }
+    }
+
+    static Object beginNodeWalk(int hops) {
+        if (!enabled || hops < nodeWalkThreshold)
+            return null;
+        NodeWalkEvent event = new NodeWalkEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitNodeWalk(Object e, List<?> list, int index, int size, int hops) {
+        NodeWalkEvent event = (NodeWalkEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.listClass = list.getClass();
+            event.index = index;
+            event.size = size;
+            event.hops = hops;
+            event.commit();
+        }
+    }
+
+    @Name("java.util.ListGrow")
+    @Label("List Grow")
+    @Category({"Java Application", "Collections"})
+    @Description("ArrayList backing array reallocated to a larger capacity")
+    static final class GrowEvent extends Event {
+        @Label("List Class")
+        Class<?> listClass;
+
+        @Label("Old Capacity")
+        int oldCapacity;
+
+        @Label("New Capacity")
+        int newCapacity;
+
+        @Label("Size")
+        int size;
+    }
+
+    @Name("java.util.ListShift")
+    @Label("List Shift")
+    @Category({"Java Application", "Collections"})
+    @Description("Elements moved by a positional insert or remove")
+    static final class ShiftEvent extends Event {
+        @Label("List Class")
+        Class<?> listClass;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Index")
+        int index;
+
+        @Label("Shifted Elements")
+        int shifted;
+    }
+
+    @Name("java.util.ListBulkOperation")
+    @Label("List Bulk Operation")
+    @Category({"Java Application", "Collections"})
+    @Description("sort, removeIf, removeAll or retainAll on a list")
+    static final class BulkEvent extends Event {
+        @Label("List Class")
+        Class<?> listClass;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Size Before")
+        int sizeBefore;
+
+        @Label("Size After")
+        int sizeAfter;
+    }
+
+    @Name("java.util.ListNodeWalk")
+    @Label("List Node Walk")
+    @Category({"Java Application", "Collections"})
+    @Description("Long walk along the node chain to reach an index")
+    static final class NodeWalkEvent extends Event {
+        @Label("List Class")
+        Class<?> listClass;
+
+        @Label("Index")
+        int index;
+
+        @Label("Size")
+        int size;
+
+        @Label("Hops")
+        int hops;
+    }
+}
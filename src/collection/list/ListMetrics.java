@@ -0,0 +1,202 @@
+
+package java.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/*
+    ArrayList和LinkedList热点操作的计数器，用于在生产环境中分析列表为什么慢。
+    默认关闭：列表的metrics字段为null，热点路径上只多一次null判断，不做任何计数。
+    通过list.setMetrics(metrics)为单个列表开启，多个列表可以共用一个ListMetrics，计数器使用LongAdder，可以被多个线程同时更新。
+    用register(name)创建的ListMetrics会放入注册表，并注册为MBean（java.util:type=ListMetrics,name=<name>），
+    可以用jconsole等JMX工具查看；直接new出来的ListMetrics只在程序中读取。
+    例如：
+    ListMetrics m = ListMetrics.register("orders");
+    orders.setMetrics(m);
+*/
+public class ListMetrics implements ListMetricsMBean {
+
+    //MBean的域名
+    static final String DOMAIN = "java.util";
+
+    //注册表，按名字存放register创建的ListMetrics
+    private static final ConcurrentMap<String, ListMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    //名字，未注册时为null
+    private final String name;
+
+    private final LongAdder growCount = new LongAdder();
+    private final LongAdder growCopiedElements = new LongAdder();
+    private final LongAdder shiftCount = new LongAdder();
+    private final LongAdder shiftedElements = new LongAdder();
+    private final LongAdder nodeLookups = new LongAdder();
+    private final LongAdder nodeHops = new LongAdder();
+    private final LongAdder concurrentModifications = new LongAdder();
+    private final LongAdder batchRemoveCount = new LongAdder();
+    private final LongAdder batchRemoveContainsCalls = new LongAdder();
+
+    //创建一个不注册的ListMetrics
+    public ListMetrics() {
+        this(null);
+    }
+
+    private ListMetrics(String name) {
+        this.name = name;
+    }
+
+    /*
+        返回名为name的ListMetrics，不存在时创建并注册为MBean。
+        同一个名字总是返回同一个实例，注册失败时抛出IllegalStateException异常。
+    */
+    public static ListMetrics register(String name) {
+        Objects.requireNonNull(name);
+        ListMetrics m = REGISTRY.get(name);
+        if (m != null)
+            return m;
+        synchronized (REGISTRY) {
+            if ((m = REGISTRY.get(name)) != null)
+                return m;
+            m = new ListMetrics(name);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(m, m.objectName());
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register list metrics " + name, e);
+            }
+            REGISTRY.put(name, m);
+            return m;
+        }
+    }
+
+    //从注册表中删除名为name的ListMetrics，并注销对应的MBean，不存在时返回false
+    public static boolean unregister(String name) {
+        Objects.requireNonNull(name);
+        synchronized (REGISTRY) {
+            ListMetrics m = REGISTRY.remove(name);
+            if (m == null)
+                return false;
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(m.objectName());
+            } catch (JMException e) {
+                // already unregistered by someone else
+            }
+            return true;
+        }
+    }
+
+    //返回名为name的ListMetrics，不存在时返回null
+    public static ListMetrics get(String name) {
+        return REGISTRY.get(name);
+    }
+
+    //返回注册表的只读快照
+    public static Map<String, ListMetrics> registered() {
+        return Collections.unmodifiableMap(new TreeMap<>(REGISTRY));
+    }
+
+    //返回名字，未注册时为null
+    public String name() {
+        return name;
+    }
+
+    //MBean的ObjectName
+    ObjectName objectName() throws JMException {
+        return new ObjectName(DOMAIN + ":type=ListMetrics,name=" + ObjectName.quote(name));
+    }
+
+    //记录一次扩容，copied为复制的元素个数
+    void recordGrow(int copied) {
+        growCount.increment();
+        growCopiedElements.add(copied);
+    }
+
+    //记录一次元素移动，moved为移动的元素个数，没有移动时不记录
+    void recordShift(int moved) {
+        if (moved > 0) {
+            shiftCount.increment();
+            shiftedElements.add(moved);
+        }
+    }
+
+    //记录一次node(index)查找，hops为走过的节点个数
+    void recordNodeLookup(int hops) {
+        nodeLookups.increment();
+        nodeHops.add(hops);
+    }
+
+    //记录一次ConcurrentModificationException
+    void recordComodification() {
+        concurrentModifications.increment();
+    }
+
+    //记录一次removeAll/retainAll，containsCalls为调用contains的次数
+    void recordBatchRemove(int containsCalls) {
+        batchRemoveCount.increment();
+        batchRemoveContainsCalls.add(containsCalls);
+    }
+
+    public long getGrowCount() {
+        return growCount.sum();
+    }
+
+    public long getGrowCopiedElements() {
+        return growCopiedElements.sum();
+    }
+
+    public long getShiftCount() {
+        return shiftCount.sum();
+    }
+
+    public long getShiftedElements() {
+        return shiftedElements.sum();
+    }
+
+    public long getNodeLookups() {
+        return nodeLookups.sum();
+    }
+
+    public long getNodeHops() {
+        return nodeHops.sum();
+    }
+
+    public long getConcurrentModifications() {
+        return concurrentModifications.sum();
+    }
+
+    public long getBatchRemoveCount() {
+        return batchRemoveCount.sum();
+    }
+
+    public long getBatchRemoveContainsCalls() {
+        return batchRemoveContainsCalls.sum();
+    }
+
+    public void reset() {
+        growCount.reset();
+        growCopiedElements.reset();
+        shiftCount.reset();
+        shiftedElements.reset();
+        nodeLookups.reset();
+        nodeHops.reset();
+        concurrentModifications.reset();
+        batchRemoveCount.reset();
+        batchRemoveContainsCalls.reset();
+    }
+
+    public String toString() {
+        return "ListMetrics[" + (name == null ? "" : name + ": ") +
+                "grows=" + getGrowCount() +
+                ", growCopied=" + getGrowCopiedElements() +
+                ", shifts=" + getShiftCount() +
+                ", shifted=" + getShiftedElements() +
+                ", nodeLookups=" + getNodeLookups() +
+                ", nodeHops=" + getNodeHops() +
+                ", comodifications=" + getConcurrentModifications() +
+                ", batchRemoves=" + getBatchRemoveCount() +
+                ", batchRemoveContains=" + getBatchRemoveContainsCalls() + "]";
+    }
+}
@@ -0,0 +1,39 @@
+
+package java.util;
+
+
+/*
+    ListMetrics的JMX管理接口（标准MBean），属性名与ListMetrics中的计数器一一对应。
+*/
+public interface ListMetricsMBean {
+
+    //ArrayList扩容次数
+    long getGrowCount();
+
+    //ArrayList扩容时复制的元素个数
+    long getGrowCopiedElements();
+
+    //add(int, E)、remove(int)等操作中移动元素（System.arraycopy）的次数
+    long getShiftCount();
+
+    //add(int, E)、remove(int)等操作中移动的元素个数
+    long getShiftedElements();
+
+    //LinkedList.node(index)的调用次数
+    long getNodeLookups();
+
+    //LinkedList.node(index)沿着链表走过的节点个数
+    long getNodeHops();
+
+    //抛出ConcurrentModificationException的次数
+    long getConcurrentModifications();
+
+    //removeAll/retainAll的调用次数
+    long getBatchRemoveCount();
+
+    //removeAll/retainAll中调用参数集合contains的次数
+    long getBatchRemoveContainsCalls();
+
+    //将所有计数器清零
+    void reset();
+}
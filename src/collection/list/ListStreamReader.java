@@ -0,0 +1,148 @@
+
+package java.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/*
+    逐批读取ListCodec编码的列表，以Iterator、Spliterator或Stream的形式返回元素，由ListCodec.reader创建。
+    创建时只读取头部（元素个数），之后每次解码最多batchSize个元素，内存中只保留当前这一批，
+    所以可以一边读取一边过滤、聚合，超过堆大小的列表也能处理，只有调用方留下的元素才会一直占用内存。
+    已经返回的元素会从批数组中清除，不会因为这个读取器而无法被回收。
+
+    只能遍历一次：iterator方法返回它本身，spliterator和stream方法与它共享读取位置。
+    读取出错时抛出UncheckedIOException异常。读取器不关闭底层的流或通道。
+*/
+public class ListStreamReader<E> implements Iterator<E> {
+
+    //trySplit每次最多解码的元素个数
+    static final int MAX_SPLIT_BATCH = 1 << 16;
+
+    private final ListCodec.Decoder decoder;
+
+    //头部记录的元素个数
+    private final int size;
+
+    //当前批，pos为下一个要返回的下标，limit为这一批的元素个数
+    private final Object[] batch;
+    private int pos;
+    private int limit;
+
+    ListStreamReader(ListCodec.Decoder decoder, int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+        this.decoder = decoder;
+        this.size = decoder.remaining;
+        this.batch = new Object[Math.min(batchSize, Math.max(size, 1))];
+    }
+
+    //返回编码的列表中元素的总个数
+    public int size() {
+        return size;
+    }
+
+    //返回还没有返回的元素个数
+    public int remaining() {
+        return limit - pos + decoder.remaining;
+    }
+
+    public boolean hasNext() {
+        return pos < limit || decoder.remaining > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E next() {
+        if (pos == limit && !refill())
+            throw new NoSuchElementException();
+        E e = (E) batch[pos];
+        batch[pos++] = null;
+        return e;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        do {
+            while (pos < limit) {
+                E e = (E) batch[pos];
+                batch[pos++] = null;
+                action.accept(e);
+            }
+        } while (refill());
+    }
+
+    //解码下一批元素，没有更多元素时返回false
+    private boolean refill() {
+        try {
+            limit = decoder.fill(batch, batch.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pos = 0;
+        return limit > 0;
+    }
+
+    //返回与该读取器共享读取位置的Spliterator
+    public Spliterator<E> spliterator() {
+        return new ReaderSpliterator();
+    }
+
+    //返回按顺序读取剩余元素的Stream，并行执行时每次分出一批元素交给其他线程处理
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /*
+        读取器的Spliterator，trySplit解码一批元素放入新数组，返回这个数组的Spliterator，
+        每次分出的元素个数按batch.length递增，最多MAX_SPLIT_BATCH个，与Spliterators.IteratorSpliterator相同。
+    */
+    final class ReaderSpliterator implements Spliterator<E> {
+        private int splitBatch;
+
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (!hasNext())
+                return false;
+            action.accept(next());
+            return true;
+        }
+
+        public void forEachRemaining(Consumer<? super E> action) {
+            ListStreamReader.this.forEachRemaining(action);
+        }
+
+        public Spliterator<E> trySplit() {
+            int n = remaining();
+            if (n <= 1)
+                return null;
+            int b = Math.min(splitBatch + batch.length, MAX_SPLIT_BATCH);
+            splitBatch = b;
+            Object[] a = new Object[Math.min(b, n)];
+            int j = 0;
+            //先取出当前批中剩余的元素，再直接解码到新数组
+            while (pos < limit && j < a.length) {
+                a[j++] = batch[pos];
+                batch[pos++] = null;
+            }
+            try {
+                j += decoder.fill(a, j, a.length - j);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return Spliterators.spliterator(a, 0, j, Spliterator.ORDERED);
+        }
+
+        public long estimateSize() {
+            return remaining();
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED;
+        }
+    }
+}
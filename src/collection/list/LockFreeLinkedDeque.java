@@ -0,0 +1,585 @@
+
+package java.util;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+
+/*
+    无锁的双端队列，提供与LinkedList相同的Deque接口，可以替代用synchronized包装的LinkedList。
+    节点结构与LinkedList.Node相同（item、prev、next），链接方式采用Maged Michael的基于CAS的双端队列算法：
+    头节点、末尾节点和状态放在一个不可变的Anchor对象中，所有两端操作都只对anchor做一次CAS，
+    1. linkFirst/linkLast先把新节点挂在链表一端，同时将状态设置为LPUSH/RPUSH，
+       之后由任意线程（包括其他线程）通过stabilize补上原端点节点指向新节点的指针，再将状态改回STABLE；
+    2. unlinkFirst/unlinkLast在STABLE状态下把anchor的一端移到相邻节点，再把新端点指向被弹出节点的指针置为null，
+       否则弹出过的节点会通过这些指针一直可达，队列从不变空时内存会无限增长。
+    遇到不稳定的anchor时，线程会先帮助完成它，所以任何线程被挂起都不会阻塞其他线程。
+    删除中间元素（remove(Object)、迭代器的remove）只把节点的item用CAS置为null（逻辑删除），
+    节点本身在到达两端被弹出时才从链表中摘除；弹出节点时同样用CAS取走item，保证每个元素只被取走一次。
+    迭代器是弱一致的：不会抛出ConcurrentModificationException，按创建时的链表遍历，可能反映也可能不反映之后的修改。
+    size()需要遍历整个链表。不允许存放null元素。
+*/
+public class LockFreeLinkedDeque<E> extends AbstractCollection<E>
+        implements Deque<E>, java.io.Serializable
+{
+    private static final long serialVersionUID = 5264733129842810591L;
+
+    //anchor的状态：两端的指针都已完整
+    static final int STABLE = 0;
+    //刚在末尾插入节点，原末尾节点的next还未指向新节点
+    static final int RPUSH = 1;
+    //刚在头部插入节点，原头节点的prev还未指向新节点
+    static final int LPUSH = 2;
+
+    //头节点、末尾节点和状态，只通过CAS整体替换
+    private transient volatile Anchor<E> anchor;
+
+    //创建一个空的双端队列
+    public LockFreeLinkedDeque() {
+        anchor = new Anchor<E>(null, null, STABLE);
+    }
+
+    //创建一个包含collection的所有元素的双端队列
+    public LockFreeLinkedDeque(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    //节点，item为null表示已被删除或弹出
+    static final class Node<E> {
+        volatile E item;
+        volatile Node<E> next;
+        volatile Node<E> prev;
+
+        Node(E item) {
+            this.item = item;
+        }
+
+        boolean casItem(E cmp, E val) {
+            return ITEM.compareAndSet(this, cmp, val);
+        }
+
+        boolean casNext(Node<E> cmp, Node<E> val) {
+            return NEXT.compareAndSet(this, cmp, val);
+        }
+
+        boolean casPrev(Node<E> cmp, Node<E> val) {
+            return PREV.compareAndSet(this, cmp, val);
+        }
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Object> ITEM =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "item");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> PREV =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "prev");
+    }
+
+    //头节点、末尾节点和状态，不可变，first为null时last也为null
+    static final class Anchor<E> {
+        final Node<E> first;
+        final Node<E> last;
+        final int status;
+
+        Anchor(Node<E> first, Node<E> last, int status) {
+            this.first = first;
+            this.last = last;
+            this.status = status;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LockFreeLinkedDeque, Anchor> ANCHOR =
+            AtomicReferenceFieldUpdater.newUpdater(LockFreeLinkedDeque.class, Anchor.class, "anchor");
+
+    private boolean casAnchor(Anchor<E> cmp, Anchor<E> val) {
+        return ANCHOR.compareAndSet(this, cmp, val);
+    }
+
+    //生成值为e的节点，并将节点插入到头部
+    private void linkFirst(E e) {
+        final Node<E> newNode = new Node<>(Objects.requireNonNull(e));
+        for (;;) {
+            Anchor<E> a = anchor;
+            if (a.first == null) {
+                if (casAnchor(a, new Anchor<>(newNode, newNode, STABLE)))
+                    return;
+            } else if (a.status == STABLE) {
+                newNode.next = a.first;
+                Anchor<E> b = new Anchor<>(newNode, a.last, LPUSH);
+                if (casAnchor(a, b)) {
+                    stabilizeFirst(b);
+                    return;
+                }
+            } else
+                stabilize(a);
+        }
+    }
+
+    //生成值为e的节点，并将节点插入到末尾
+    private void linkLast(E e) {
+        final Node<E> newNode = new Node<>(Objects.requireNonNull(e));
+        for (;;) {
+            Anchor<E> a = anchor;
+            if (a.last == null) {
+                if (casAnchor(a, new Anchor<>(newNode, newNode, STABLE)))
+                    return;
+            } else if (a.status == STABLE) {
+                newNode.prev = a.last;
+                Anchor<E> b = new Anchor<>(a.first, newNode, RPUSH);
+                if (casAnchor(a, b)) {
+                    stabilizeLast(b);
+                    return;
+                }
+            } else
+                stabilize(a);
+        }
+    }
+
+    //弹出头节点并取走其中的元素，跳过已被逻辑删除的节点，队列为空时返回null
+    private E unlinkFirst() {
+        for (;;) {
+            Anchor<E> a = anchor;
+            Node<E> f = a.first;
+            if (f == null)
+                return null;
+            boolean unlinked = false;
+            if (f == a.last)
+                unlinked = casAnchor(a, new Anchor<E>(null, null, STABLE));
+            else if (a.status == STABLE) {
+                Node<E> next = f.next;
+                //新的头节点不再指向被弹出的节点，否则所有弹出过的节点都会沿着prev一直可达
+                if (unlinked = casAnchor(a, new Anchor<>(next, a.last, STABLE)))
+                    next.casPrev(f, null);
+            } else
+                stabilize(a);
+            //节点已从链表中摘除，只有当前线程能弹出它，但可能与逻辑删除竞争item
+            if (unlinked) {
+                E item = f.item;
+                if (item != null && f.casItem(item, null))
+                    return item;
+            }
+        }
+    }
+
+    //弹出末尾节点并取走其中的元素，跳过已被逻辑删除的节点，队列为空时返回null
+    private E unlinkLast() {
+        for (;;) {
+            Anchor<E> a = anchor;
+            Node<E> l = a.last;
+            if (l == null)
+                return null;
+            boolean unlinked = false;
+            if (l == a.first)
+                unlinked = casAnchor(a, new Anchor<E>(null, null, STABLE));
+            else if (a.status == STABLE) {
+                Node<E> prev = l.prev;
+                //新的末尾节点不再指向被弹出的节点
+                if (unlinked = casAnchor(a, new Anchor<>(a.first, prev, STABLE)))
+                    prev.casNext(l, null);
+            } else
+                stabilize(a);
+            if (unlinked) {
+                E item = l.item;
+                if (item != null && l.casItem(item, null))
+                    return item;
+            }
+        }
+    }
+
+    //帮助完成不稳定的anchor
+    private void stabilize(Anchor<E> a) {
+        if (a.status == RPUSH)
+            stabilizeLast(a);
+        else
+            stabilizeFirst(a);
+    }
+
+    //让原末尾节点的next指向新的末尾节点，然后将状态改回STABLE
+    private void stabilizeLast(Anchor<E> a) {
+        Node<E> prev = a.last.prev;
+        if (anchor != a)
+            return;
+        Node<E> prevNext = prev.next;
+        if (prevNext != a.last) {
+            if (anchor != a)
+                return;
+            if (!prev.casNext(prevNext, a.last))
+                return;
+        }
+        casAnchor(a, new Anchor<>(a.first, a.last, STABLE));
+    }
+
+    //让原头节点的prev指向新的头节点，然后将状态改回STABLE
+    private void stabilizeFirst(Anchor<E> a) {
+        Node<E> next = a.first.next;
+        if (anchor != a)
+            return;
+        Node<E> nextPrev = next.prev;
+        if (nextPrev != a.first) {
+            if (anchor != a)
+                return;
+            if (!next.casPrev(nextPrev, a.first))
+                return;
+        }
+        casAnchor(a, new Anchor<>(a.first, a.last, STABLE));
+    }
+
+    //返回一个稳定的anchor，遍历时从它的first走到last，中间的指针都是完整的
+    Anchor<E> stableAnchor() {
+        for (;;) {
+            Anchor<E> a = anchor;
+            if (a.status == STABLE)
+                return a;
+            stabilize(a);
+        }
+    }
+
+    //从头节点开始返回第一个未被删除的节点，没有时返回null
+    Node<E> firstLive(Anchor<E> a) {
+        Node<E> last = a.last;
+        for (Node<E> p = a.first; p != null; p = (p == last) ? null : p.next)
+            if (p.item != null)
+                return p;
+        return null;
+    }
+
+    //从末尾节点开始返回第一个未被删除的节点，没有时返回null
+    Node<E> lastLive(Anchor<E> a) {
+        Node<E> first = a.first;
+        for (Node<E> p = a.last; p != null; p = (p == first) ? null : p.prev)
+            if (p.item != null)
+                return p;
+        return null;
+    }
+
+    //将元素插入到头部
+    public void addFirst(E e) {
+        linkFirst(e);
+    }
+
+    //将元素插入到末尾
+    public void addLast(E e) {
+        linkLast(e);
+    }
+
+    //将元素插入到头部，队列没有容量限制，总是返回true
+    public boolean offerFirst(E e) {
+        linkFirst(e);
+        return true;
+    }
+
+    //将元素插入到末尾，队列没有容量限制，总是返回true
+    public boolean offerLast(E e) {
+        linkLast(e);
+        return true;
+    }
+
+    //返回头部元素，队列为空时返回null
+    public E peekFirst() {
+        for (;;) {
+            Node<E> p = firstLive(stableAnchor());
+            if (p == null)
+                return null;
+            E item = p.item;
+            //读取item之前节点可能已被弹出，重新查找
+            if (item != null)
+                return item;
+        }
+    }
+
+    //返回末尾元素，队列为空时返回null
+    public E peekLast() {
+        for (;;) {
+            Node<E> p = lastLive(stableAnchor());
+            if (p == null)
+                return null;
+            E item = p.item;
+            if (item != null)
+                return item;
+        }
+    }
+
+    //返回头部元素，队列为空时抛出NoSuchElementException异常
+    public E getFirst() {
+        E x = peekFirst();
+        if (x == null)
+            throw new NoSuchElementException();
+        return x;
+    }
+
+    //返回末尾元素，队列为空时抛出NoSuchElementException异常
+    public E getLast() {
+        E x = peekLast();
+        if (x == null)
+            throw new NoSuchElementException();
+        return x;
+    }
+
+    //删除并返回头部元素，队列为空时返回null
+    public E pollFirst() {
+        return unlinkFirst();
+    }
+
+    //删除并返回末尾元素，队列为空时返回null
+    public E pollLast() {
+        return unlinkLast();
+    }
+
+    //删除并返回头部元素，队列为空时抛出NoSuchElementException异常
+    public E removeFirst() {
+        E x = unlinkFirst();
+        if (x == null)
+            throw new NoSuchElementException();
+        return x;
+    }
+
+    //删除并返回末尾元素，队列为空时抛出NoSuchElementException异常
+    public E removeLast() {
+        E x = unlinkLast();
+        if (x == null)
+            throw new NoSuchElementException();
+        return x;
+    }
+
+    // Queue operations.
+
+    public boolean offer(E e) {
+        return offerLast(e);
+    }
+
+    public boolean add(E e) {
+        return offerLast(e);
+    }
+
+    public E poll() {
+        return pollFirst();
+    }
+
+    public E remove() {
+        return removeFirst();
+    }
+
+    public E peek() {
+        return peekFirst();
+    }
+
+    public E element() {
+        return getFirst();
+    }
+
+    // Stack operations.
+
+    public void push(E e) {
+        addFirst(e);
+    }
+
+    public E pop() {
+        return removeFirst();
+    }
+
+    //逻辑删除第一个等于o的元素
+    public boolean removeFirstOccurrence(Object o) {
+        Objects.requireNonNull(o);
+        Anchor<E> a = stableAnchor();
+        Node<E> last = a.last;
+        for (Node<E> p = a.first; p != null; p = (p == last) ? null : p.next) {
+            E item = p.item;
+            if (item != null && o.equals(item) && p.casItem(item, null))
+                return true;
+        }
+        return false;
+    }
+
+    //逻辑删除最后一个等于o的元素
+    public boolean removeLastOccurrence(Object o) {
+        Objects.requireNonNull(o);
+        Anchor<E> a = stableAnchor();
+        Node<E> first = a.first;
+        for (Node<E> p = a.last; p != null; p = (p == first) ? null : p.prev) {
+            E item = p.item;
+            if (item != null && o.equals(item) && p.casItem(item, null))
+                return true;
+        }
+        return false;
+    }
+
+    public boolean remove(Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    //判断是否包含传入元素
+    public boolean contains(Object o) {
+        if (o == null)
+            return false;
+        Anchor<E> a = stableAnchor();
+        Node<E> last = a.last;
+        for (Node<E> p = a.first; p != null; p = (p == last) ? null : p.next) {
+            E item = p.item;
+            if (item != null && o.equals(item))
+                return true;
+        }
+        return false;
+    }
+
+    //判断是否为空
+    public boolean isEmpty() {
+        return peekFirst() == null;
+    }
+
+    //返回元素个数，需要遍历整个链表，并发修改时结果不一定准确
+    public int size() {
+        int count = 0;
+        Anchor<E> a = stableAnchor();
+        Node<E> last = a.last;
+        for (Node<E> p = a.first; p != null; p = (p == last) ? null : p.next)
+            if (p.item != null)
+                // Collection.size() spec says to max out
+                if (++count == Integer.MAX_VALUE)
+                    break;
+        return count;
+    }
+
+    //将collection中的元素逐个插入到末尾
+    public boolean addAll(Collection<? extends E> c) {
+        if (c == this)
+            // As historically specified in AbstractQueue#addAll
+            throw new IllegalArgumentException();
+        boolean modified = false;
+        for (E e : c) {
+            linkLast(e);
+            modified = true;
+        }
+        return modified;
+    }
+
+    //清空队列，逐个弹出头部元素
+    public void clear() {
+        while (unlinkFirst() != null)
+            ;
+    }
+
+    //返回一个从头到尾的弱一致迭代器
+    public Iterator<E> iterator() {
+        return new Itr(false);
+    }
+
+    //返回一个从尾到头的弱一致迭代器
+    public Iterator<E> descendingIterator() {
+        return new Itr(true);
+    }
+
+    /*
+        弱一致迭代器。
+        创建时取一个稳定的anchor，沿着next（或prev）从一端走到另一端，跳过已删除的节点。
+        下一个元素在hasNext之前就已经读出，所以hasNext返回true之后next一定能返回元素。
+    */
+    private final class Itr implements Iterator<E> {
+        //是否从尾到头遍历
+        private final boolean descending;
+        //遍历的终点
+        private final Node<E> end;
+        //下一个要返回的节点
+        private Node<E> nextNode;
+        //下一个要返回的元素
+        private E nextItem;
+        //刚被返回的节点和元素，用于remove
+        private Node<E> lastRet;
+        private E lastItem;
+
+        Itr(boolean descending) {
+            this.descending = descending;
+            Anchor<E> a = stableAnchor();
+            this.end = descending ? a.first : a.last;
+            advance(descending ? a.last : a.first);
+        }
+
+        //从p开始查找下一个未被删除的节点
+        private void advance(Node<E> p) {
+            for (; p != null; p = step(p)) {
+                E item = p.item;
+                if (item != null) {
+                    nextNode = p;
+                    nextItem = item;
+                    return;
+                }
+            }
+            nextNode = null;
+            nextItem = null;
+        }
+
+        //p的下一个节点，到达终点时返回null
+        private Node<E> step(Node<E> p) {
+            return (p == end) ? null : descending ? p.prev : p.next;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        public E next() {
+            E item = nextItem;
+            if (item == null)
+                throw new NoSuchElementException();
+            lastRet = nextNode;
+            lastItem = item;
+            advance(step(nextNode));
+            return item;
+        }
+
+        //逻辑删除刚被返回的节点
+        public void remove() {
+            Node<E> l = lastRet;
+            if (l == null)
+                throw new IllegalStateException();
+            //用CAS置为null，元素已被其他线程弹出或删除时什么也不做
+            l.casItem(lastItem, null);
+            lastRet = null;
+            lastItem = null;
+        }
+
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            while (hasNext())
+                action.accept(next());
+        }
+    }
+
+    //返回一个按迭代器分割的分割器
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.CONCURRENT);
+    }
+
+    //私有方法，将实例序列化，逐个写出元素，最后写出null
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        // Write out any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out all elements in the proper order.
+        for (E e : this)
+            s.writeObject(e);
+
+        // Use trailing null as sentinel
+        s.writeObject(null);
+    }
+
+    //私有方法，从反序列化中重构实例
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        anchor = new Anchor<E>(null, null, STABLE);
+
+        // Read in elements until trailing null sentinel found
+        Object item;
+        while ((item = s.readObject()) != null) {
+            @SuppressWarnings("unchecked") E e = (E) item;
+            linkLast(e);
+        }
+    }
+}
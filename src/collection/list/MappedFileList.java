@@ -0,0 +1,434 @@
+
+package java.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+/*
+    基于内存映射文件的持久化列表。
+    ArrayList和LinkedList的writeObject都是通过ObjectOutputStream逐个写出元素，
+    元素很多时，重启后重新反序列化要花很长时间。
+    这个类直接把元素编码后写在内存映射文件（MappedByteBuffer）中，
+    文件头记录了元素个数，重新打开时只需要读文件头，时间复杂度为O(1)，元素在get时才解码。
+
+    支持两种记录格式：
+    1. 定长记录：使用OffHeapArrayList.Codec编码，第i个元素的位置可以直接计算出来，支持set；
+    2. 变长记录：使用RecordCodec编码，每条记录前有4个字节的长度，
+       另有一个索引文件（数据文件名加".idx"）按顺序保存每条记录的位置，用于随机访问。
+
+    列表只支持在末尾追加（add）、随机读取（get）和截断（truncate，即删除末尾的元素），
+    不支持在中间插入或删除。
+    写入只保证进入了操作系统的页缓存，调用force()（或设置setForceInterval）才会刷到磁盘。
+    文件按REGION_SIZE大小分区映射，记录不会跨越分区，所以单个记录不能超过一个分区。
+    和ArrayList一样，这个类不是线程安全的，同一个文件也不能被多个实例同时打开。
+*/
+public class MappedFileList<E> extends AbstractList<E>
+        implements RandomAccess, java.io.Closeable
+{
+    /*
+        变长记录编解码器，encode返回的字节数组就是记录内容，长度前缀由列表写入。
+        decode从buffer中offset开始的length个字节解码出一个元素，不能修改buffer的position和limit。
+    */
+    public interface RecordCodec<E> {
+
+        byte[] encode(E e);
+
+        E decode(ByteBuffer buffer, int offset, int length);
+    }
+
+    //UTF-8字符串编解码器，不支持null
+    public static final RecordCodec<String> UTF8_CODEC = new RecordCodec<String>() {
+        public byte[] encode(String e) {
+            return e.getBytes(StandardCharsets.UTF_8);
+        }
+        public String decode(ByteBuffer buffer, int offset, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer b = buffer.duplicate();
+            b.position(offset);
+            b.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    //文件标识
+    private static final int MAGIC = 0x4D464C53; // "MFLS"
+
+    //文件格式版本
+    private static final int VERSION = 1;
+
+    //记录格式：定长
+    private static final int FIXED = 0;
+
+    //记录格式：变长
+    private static final int VARIABLE = 1;
+
+    //文件头中各字段的位置
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int FORMAT_OFFSET = 8;
+    private static final int WIDTH_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+    private static final int END_OFFSET = 24;
+
+    //每个分区开头保留的字节数，第0个分区用来存放文件头，其余分区留空以便计算位置
+    static final int HEADER_SIZE = 64;
+
+    //每个分区的大小为2的REGION_SHIFT次方，即64MB
+    static final int REGION_SHIFT = 26;
+
+    static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+    //索引文件中每条索引的长度，即一个long类型的记录位置
+    private static final int INDEX_WIDTH = 8;
+
+    //数据文件
+    private final Mapping data;
+
+    //索引文件，定长记录时为null
+    private final Mapping index;
+
+    //记录格式
+    private final int format;
+
+    //定长记录的编解码器
+    private final OffHeapArrayList.Codec<E> fixedCodec;
+
+    //变长记录的编解码器
+    private final RecordCodec<E> recordCodec;
+
+    //定长记录的长度
+    private final int width;
+
+    //定长记录时每个分区能存放的记录个数
+    private final int recordsPerRegion;
+
+    //元素个数
+    private long count;
+
+    //变长记录时，下一条记录的写入位置
+    private long end;
+
+    //每追加多少个元素就自动调用一次force，0表示只在手动调用force时刷盘
+    private int forceInterval;
+
+    //距离上一次force追加的元素个数
+    private int unforced;
+
+    /*
+        打开或新建一个定长记录的列表。
+        文件已存在时检查文件头并直接读出元素个数，不读取任何元素。
+    */
+    public static <E> MappedFileList<E> openFixed(Path path, OffHeapArrayList.Codec<E> codec)
+            throws IOException {
+        return new MappedFileList<>(path, FIXED, Objects.requireNonNull(codec), null);
+    }
+
+    //打开或新建一个变长记录的列表，索引文件为path加".idx"
+    public static <E> MappedFileList<E> openVariable(Path path, RecordCodec<E> codec)
+            throws IOException {
+        return new MappedFileList<>(path, VARIABLE, null, Objects.requireNonNull(codec));
+    }
+
+    private MappedFileList(Path path, int format,
+                           OffHeapArrayList.Codec<E> fixedCodec, RecordCodec<E> recordCodec)
+            throws IOException {
+        this.format = format;
+        this.fixedCodec = fixedCodec;
+        this.recordCodec = recordCodec;
+        this.width = (format == FIXED) ? fixedCodec.width() : 0;
+        if (format == FIXED && (width <= 0 || width > REGION_SIZE - HEADER_SIZE))
+            throw new IllegalArgumentException("Illegal codec width: " + width);
+        this.recordsPerRegion = (format == FIXED) ? (REGION_SIZE - HEADER_SIZE) / width : 0;
+
+        //打开前记录文件是否存在，失败时删除这次调用创建的文件
+        boolean created = Files.notExists(path);
+        this.data = new Mapping(path);
+        Path idxPath = (format == VARIABLE) ? Paths.get(path.toString() + ".idx") : null;
+        boolean idxCreated = false;
+        long length = -1, idxLength = -1;
+        Mapping idx = null;
+        try {
+            length = data.channel.size();
+            //只有空文件才当作新文件，已有文件先用channel.read检查文件头，检查通过之前不映射，不会改变文件长度
+            if (length > 0) {
+                if (length < HEADER_SIZE)
+                    throw new IOException("Not a list file: " + path);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining())
+                    if (data.channel.read(header, header.position()) < 0)
+                        throw new IOException("Not a list file: " + path);
+                if (header.getInt(MAGIC_OFFSET) != MAGIC
+                        || header.getInt(VERSION_OFFSET) != VERSION)
+                    throw new IOException("Not a list file: " + path);
+                if (header.getInt(FORMAT_OFFSET) != format
+                        || header.getInt(WIDTH_OFFSET) != width)
+                    throw new IOException("Record format mismatch: " + path);
+                count = header.getLong(COUNT_OFFSET);
+                end = header.getLong(END_OFFSET);
+                if (count < 0 || end < HEADER_SIZE)
+                    throw new IOException("Corrupted header: " + path);
+            }
+            if (idxPath != null) {
+                idxCreated = Files.notExists(idxPath);
+                idx = new Mapping(idxPath);
+                idxLength = idx.channel.size();
+            }
+            if (length == 0) {
+                //新文件：写入文件头
+                ByteBuffer header = data.region(0);
+                header.putInt(MAGIC_OFFSET, MAGIC);
+                header.putInt(VERSION_OFFSET, VERSION);
+                header.putInt(FORMAT_OFFSET, format);
+                header.putInt(WIDTH_OFFSET, width);
+                count = 0;
+                end = HEADER_SIZE;
+                writeHeader();
+            }
+        } catch (IOException | RuntimeException e) {
+            //恢复原来的文件长度，删除这次调用创建的文件
+            try {
+                data.close(length);
+                if (created)
+                    Files.deleteIfExists(path);
+                if (idx != null) {
+                    idx.close(idxLength);
+                    if (idxCreated)
+                        Files.deleteIfExists(idxPath);
+                }
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        this.index = idx;
+    }
+
+    /*
+        按分区映射的文件，每个分区在第一次访问时映射，
+        以读写方式映射超出文件长度的区域时，文件会自动变长。
+    */
+    static final class Mapping {
+        final FileChannel channel;
+        MappedByteBuffer[] regions = new MappedByteBuffer[4];
+
+        Mapping(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        //返回第i个分区，没有映射过时进行映射
+        MappedByteBuffer region(int i) {
+            MappedByteBuffer[] rs = regions;
+            if (i >= rs.length)
+                rs = regions = Arrays.copyOf(rs, Math.max(i + 1, rs.length << 1));
+            MappedByteBuffer r = rs[i];
+            if (r == null) {
+                try {
+                    r = channel.map(FileChannel.MapMode.READ_WRITE,
+                            (long) i << REGION_SHIFT, REGION_SIZE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                r.order(ByteOrder.BIG_ENDIAN);
+                rs[i] = r;
+            }
+            return r;
+        }
+
+        //将已映射的分区写回磁盘
+        void force() {
+            for (MappedByteBuffer r : regions)
+                if (r != null)
+                    r.force();
+        }
+
+        //解除映射，length不小于0时将文件截断为length个字节，然后关闭文件
+        void close(long length) throws IOException {
+            MappedByteBuffer[] rs = regions;
+            regions = new MappedByteBuffer[0];
+            for (MappedByteBuffer r : rs)
+                if (r != null)
+                    OffHeapArrayList.free(r);
+            try {
+                if (length >= 0)
+                    channel.truncate(length);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    //将元素个数和写入位置写入文件头
+    private void writeHeader() {
+        ByteBuffer header = data.region(0);
+        header.putLong(COUNT_OFFSET, count);
+        header.putLong(END_OFFSET, end);
+    }
+
+    //检查列表是否已经关闭
+    private void ensureOpen() {
+        if (!data.channel.isOpen())
+            throw new IllegalStateException("list is closed");
+    }
+
+    //定长记录：第i个元素的文件位置
+    private long fixedPosition(long i) {
+        long region = i / recordsPerRegion;
+        return (region << REGION_SHIFT) + HEADER_SIZE + (i - region * recordsPerRegion) * width;
+    }
+
+    //变长记录：第i个元素的文件位置，从索引文件中读出
+    private long variablePosition(long i) {
+        long p = i * INDEX_WIDTH;
+        return index.region((int) (p >>> REGION_SHIFT)).getLong((int) p & (REGION_SIZE - 1));
+    }
+
+    //返回元素个数，超过Integer.MAX_VALUE时返回Integer.MAX_VALUE
+    public int size() {
+        return (count > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) count;
+    }
+
+    //返回实际元素个数
+    public long longSize() {
+        return count;
+    }
+
+    //返回index索引位置元素
+    public E get(int index) {
+        return get((long) index);
+    }
+
+    //返回index索引位置元素，每次调用都会从映射文件中解码出一个新对象
+    public E get(long i) {
+        ensureOpen();
+        rangeCheck(i);
+        if (format == FIXED) {
+            long p = fixedPosition(i);
+            return fixedCodec.decode(data.region((int) (p >>> REGION_SHIFT)),
+                    (int) p & (REGION_SIZE - 1));
+        }
+        long p = variablePosition(i);
+        ByteBuffer r = data.region((int) (p >>> REGION_SHIFT));
+        int offset = (int) p & (REGION_SIZE - 1);
+        return recordCodec.decode(r, offset + 4, r.getInt(offset));
+    }
+
+    //覆盖index位置的元素，只有定长记录支持
+    public E set(int index, E element) {
+        ensureOpen();
+        if (format != FIXED)
+            throw new UnsupportedOperationException("set on variable-length records");
+        rangeCheck(index);
+        E oldValue = get(index);
+        long p = fixedPosition(index);
+        fixedCodec.encode(element, data.region((int) (p >>> REGION_SHIFT)),
+                (int) p & (REGION_SIZE - 1));
+        return oldValue;
+    }
+
+    //在末尾追加元素，先写记录再更新文件头中的元素个数
+    public boolean add(E e) {
+        ensureOpen();
+        if (format == FIXED) {
+            long p = fixedPosition(count);
+            fixedCodec.encode(e, data.region((int) (p >>> REGION_SHIFT)),
+                    (int) p & (REGION_SIZE - 1));
+        } else {
+            byte[] bytes = recordCodec.encode(e);
+            int length = 4 + bytes.length;
+            if (length > REGION_SIZE - HEADER_SIZE)
+                throw new IllegalArgumentException("Record too large: " + bytes.length);
+            long p = end;
+            //当前分区剩余空间不够时，记录写到下一个分区的开头
+            if ((p & (REGION_SIZE - 1)) + length > REGION_SIZE)
+                p = (((p >>> REGION_SHIFT) + 1) << REGION_SHIFT) + HEADER_SIZE;
+            ByteBuffer r = data.region((int) (p >>> REGION_SHIFT)).duplicate();
+            r.position((int) p & (REGION_SIZE - 1));
+            r.putInt(bytes.length);
+            r.put(bytes);
+            long ip = count * INDEX_WIDTH;
+            index.region((int) (ip >>> REGION_SHIFT)).putLong((int) ip & (REGION_SIZE - 1), p);
+            end = p + length;
+        }
+        count++;
+        modCount++;
+        writeHeader();
+        if (forceInterval > 0 && ++unforced >= forceInterval)
+            force();
+        return true;
+    }
+
+    //删除末尾的元素，只保留前newSize个元素，文件在close时才会变短
+    public void truncate(long newSize) {
+        ensureOpen();
+        if (newSize < 0 || newSize > count)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(newSize));
+        if (newSize == count)
+            return;
+        if (format == VARIABLE)
+            end = (newSize == 0) ? HEADER_SIZE : variablePosition(newSize);
+        count = newSize;
+        modCount++;
+        writeHeader();
+    }
+
+    //只支持删除末尾的元素，其他位置不支持（AbstractList.clear也通过这个方法实现）
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (toIndex != count)
+            throw new UnsupportedOperationException("only a tail range can be removed");
+        truncate(fromIndex);
+    }
+
+    //设置自动刷盘间隔，每追加interval个元素调用一次force，0表示只在手动调用时刷盘
+    public void setForceInterval(int interval) {
+        if (interval < 0)
+            throw new IllegalArgumentException("Illegal interval: " + interval);
+        forceInterval = interval;
+    }
+
+    //将映射文件中的修改写回磁盘（msync），先刷索引文件，再刷数据文件（包括文件头）
+    public void force() {
+        ensureOpen();
+        if (index != null)
+            index.force();
+        data.force();
+        unforced = 0;
+    }
+
+    //刷盘后解除映射，并将文件截断到实际使用的长度，之后再访问列表会抛出IllegalStateException
+    public void close() throws IOException {
+        if (!data.channel.isOpen())
+            return;
+        force();
+        long dataLength = (format == FIXED)
+                ? ((count == 0) ? HEADER_SIZE : fixedPosition(count - 1) + width)
+                : end;
+        try {
+            data.close(dataLength);
+        } finally {
+            if (index != null)
+                index.close(count * INDEX_WIDTH);
+        }
+    }
+
+    //检查传入下标是否越界
+    private void rangeCheck(long index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //返回异常信息
+    private String outOfBoundsMsg(long index) {
+        return "Index: "+index+", Size: "+count;
+    }
+}
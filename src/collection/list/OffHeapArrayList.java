@@ -0,0 +1,437 @@
+
+package java.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Consumer;
+import sun.nio.ch.DirectBuffer;
+
+
+/*
+    元素存放在堆外内存中的ArrayList。
+    ArrayList中大量的小对象会进入老年代，使Full GC变慢。
+    这个类把每个元素用固定宽度的编解码器（Codec）编码成字节，存放在直接内存（direct ByteBuffer）中，
+    GC只能看到这个列表对象和一个ByteBuffer对象，元素本身不占用堆空间。
+    get每次都会解码出一个新对象，所以适合存放小的值对象，而不适合需要保持对象身份的场景。
+    直接内存不会随列表对象及时回收，使用完毕后应调用close()释放。
+    和ArrayList一样，这个类不是线程安全的。
+*/
+public class OffHeapArrayList<E> extends AbstractList<E>
+        implements RandomAccess, AutoCloseable
+{
+    /*
+        固定宽度的编解码器，每个元素编码后都占用width()个字节。
+        encode和decode使用ByteBuffer的绝对位置读写，不能修改buffer的position和limit。
+    */
+    public interface Codec<E> {
+
+        //每个元素编码后占用的字节数
+        int width();
+
+        //将元素e编码后写入buffer中从offset开始的width()个字节
+        void encode(E e, ByteBuffer buffer, int offset);
+
+        //从buffer中offset开始的width()个字节解码出一个元素
+        E decode(ByteBuffer buffer, int offset);
+    }
+
+    //Integer编解码器，占4个字节，不支持null
+    public static final Codec<Integer> INT_CODEC = new Codec<Integer>() {
+        public int width() { return Integer.BYTES; }
+        public void encode(Integer e, ByteBuffer buffer, int offset) { buffer.putInt(offset, e); }
+        public Integer decode(ByteBuffer buffer, int offset) { return buffer.getInt(offset); }
+    };
+
+    //Long编解码器，占8个字节，不支持null
+    public static final Codec<Long> LONG_CODEC = new Codec<Long>() {
+        public int width() { return Long.BYTES; }
+        public void encode(Long e, ByteBuffer buffer, int offset) { buffer.putLong(offset, e); }
+        public Long decode(ByteBuffer buffer, int offset) { return buffer.getLong(offset); }
+    };
+
+    //Double编解码器，占8个字节，不支持null
+    public static final Codec<Double> DOUBLE_CODEC = new Codec<Double>() {
+        public int width() { return Double.BYTES; }
+        public void encode(Double e, ByteBuffer buffer, int offset) { buffer.putDouble(offset, e); }
+        public Double decode(ByteBuffer buffer, int offset) { return buffer.getDouble(offset); }
+    };
+
+    //默认容量为10
+    private static final int DEFAULT_CAPACITY = 10;
+
+    //移动元素时使用的中转缓冲区大小
+    private static final int MOVE_CHUNK = 8192;
+
+    //编解码器
+    private final Codec<E> codec;
+
+    //每个元素占用的字节数
+    private final int width;
+
+    //存放元素的直接内存，close之后为null
+    private ByteBuffer buffer;
+
+    //当前能存放的元素个数
+    private int capacity;
+
+    //记录元素个数
+    private int size;
+
+    //移动元素时使用的中转缓冲区，第一次移动时才分配
+    private byte[] moveChunk;
+
+    //创建一个初始容量为默认容量10的空列表
+    public OffHeapArrayList(Codec<E> codec) {
+        this(codec, DEFAULT_CAPACITY);
+    }
+
+    //创建一个初始容量为initialCapacity的空列表
+    public OffHeapArrayList(Codec<E> codec, int initialCapacity) {
+        this.codec = Objects.requireNonNull(codec);
+        this.width = codec.width();
+        if (width <= 0)
+            throw new IllegalArgumentException("Illegal codec width: " + width);
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        if (initialCapacity > maxCapacity())
+            throw new OutOfMemoryError();
+        this.buffer = allocate(initialCapacity);
+        this.capacity = initialCapacity;
+    }
+
+    //ByteBuffer的长度不能超过Integer.MAX_VALUE，所以最大元素个数与width有关
+    private int maxCapacity() {
+        return Integer.MAX_VALUE / width;
+    }
+
+    //分配能存放n个元素的直接内存
+    private ByteBuffer allocate(int n) {
+        return ByteBuffer.allocateDirect(n * width).order(ByteOrder.nativeOrder());
+    }
+
+    //立即释放直接内存（或解除文件映射），而不是等GC回收ByteBuffer对象后再释放
+    static void free(ByteBuffer buffer) {
+        if (buffer instanceof DirectBuffer && ((DirectBuffer) buffer).cleaner() != null)
+            ((DirectBuffer) buffer).cleaner().clean();
+    }
+
+    //检查列表是否已经关闭
+    private ByteBuffer buffer() {
+        ByteBuffer b = buffer;
+        if (b == null)
+            throw new IllegalStateException("list is closed");
+        return b;
+    }
+
+    //释放直接内存，之后再访问列表会抛出IllegalStateException，重复调用无影响
+    public void close() {
+        ByteBuffer b = buffer;
+        if (b != null) {
+            buffer = null;
+            capacity = size = 0;
+            modCount++;
+            free(b);
+        }
+    }
+
+    //判断列表是否已经关闭
+    public boolean isClosed() {
+        return buffer == null;
+    }
+
+    //返回当前占用的直接内存字节数
+    public long offHeapBytes() {
+        return (long) capacity * width;
+    }
+
+    //确保能装下minCapacity个元素
+    public void ensureCapacity(int minCapacity) {
+        buffer();
+        modCount++;
+        if (minCapacity - capacity > 0)
+            grow(minCapacity);
+    }
+
+    //扩容算法，与ArrayList相同扩大50%，然后将旧内存中的元素复制过去并释放旧内存
+    private void grow(int minCapacity) {
+        int max = maxCapacity();
+        if (minCapacity < 0 || minCapacity > max) // overflow
+            throw new OutOfMemoryError();
+        // overflow-conscious code
+        int newCapacity = capacity + (capacity >> 1);
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - max > 0 || newCapacity < 0)
+            newCapacity = max;
+        ByteBuffer old = buffer;
+        ByteBuffer b = allocate(newCapacity);
+        ByteBuffer src = old.duplicate();
+        src.position(0).limit(size * width);
+        b.put(src);
+        b.clear();
+        buffer = b;
+        capacity = newCapacity;
+        free(old);
+    }
+
+    //将容量修剪为实际元素个数
+    public void trimToSize() {
+        ByteBuffer old = buffer();
+        modCount++;
+        if (size < capacity) {
+            ByteBuffer b = allocate(size);
+            ByteBuffer src = old.duplicate();
+            src.position(0).limit(size * width);
+            b.put(src);
+            b.clear();
+            buffer = b;
+            capacity = size;
+            free(old);
+        }
+    }
+
+    /*
+        将从src字节开始的len个字节移动到dst字节开始的位置，作用类似System.arraycopy。
+        同一个ByteBuffer内的区间重叠时，put(ByteBuffer)不保证结果正确，
+        所以借助中转缓冲区分块复制：dst小于src时从前往后复制，反之从后往前复制。
+    */
+    private void moveBytes(int src, int dst, int len) {
+        if (len <= 0 || src == dst)
+            return;
+        final ByteBuffer b = buffer;
+        byte[] chunk = moveChunk;
+        if (chunk == null)
+            chunk = moveChunk = new byte[MOVE_CHUNK];
+        ByteBuffer from = b.duplicate(), to = b.duplicate();
+        if (dst < src) {
+            for (int done = 0; done < len; ) {
+                int n = Math.min(MOVE_CHUNK, len - done);
+                from.position(src + done);
+                from.get(chunk, 0, n);
+                to.position(dst + done);
+                to.put(chunk, 0, n);
+                done += n;
+            }
+        } else {
+            for (int remaining = len; remaining > 0; ) {
+                int n = Math.min(MOVE_CHUNK, remaining);
+                remaining -= n;
+                from.position(src + remaining);
+                from.get(chunk, 0, n);
+                to.position(dst + remaining);
+                to.put(chunk, 0, n);
+            }
+        }
+    }
+
+    //返回实际存储的元素个数
+    public int size() {
+        return size;
+    }
+
+    //判断是否有存储元素
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //解码index索引位置元素
+    E elementData(int index) {
+        return codec.decode(buffer, index * width);
+    }
+
+    //返回index索引位置元素，每次调用都会解码出一个新对象
+    public E get(int index) {
+        buffer();
+        rangeCheck(index);
+        return elementData(index);
+    }
+
+    //将传入索引位置的元素编码覆盖为新传入的元素，并返回旧元素
+    public E set(int index, E element) {
+        ByteBuffer b = buffer();
+        rangeCheck(index);
+        E oldValue = elementData(index);
+        codec.encode(element, b, index * width);
+        return oldValue;
+    }
+
+    //新增元素在所有元素后面
+    public boolean add(E e) {
+        ensureCapacity(size + 1);  // Increments modCount!!
+        codec.encode(e, buffer, size * width);
+        size++;
+        return true;
+    }
+
+    //将新元素插入到指定索引位置，index之后的元素整体后移width个字节
+    public void add(int index, E element) {
+        buffer();
+        rangeCheckForAdd(index);
+        ensureCapacity(size + 1);  // Increments modCount!!
+        moveBytes(index * width, (index + 1) * width, (size - index) * width);
+        codec.encode(element, buffer, index * width);
+        size++;
+    }
+
+    //删除指定位置元素，并返回被删除的元素
+    public E remove(int index) {
+        buffer();
+        rangeCheck(index);
+        modCount++;
+        E oldValue = elementData(index);
+        int numMoved = size - index - 1;
+        if (numMoved > 0)
+            moveBytes((index + 1) * width, index * width, numMoved * width);
+        size--;
+        return oldValue;
+    }
+
+    //清空所有元素，堆外内存不需要赋值null，直接将size置为0
+    public void clear() {
+        buffer();
+        modCount++;
+        size = 0;
+    }
+
+    //删除从开始坐标fromIndex到截止坐标toIndex的元素
+    protected void removeRange(int fromIndex, int toIndex) {
+        buffer();
+        modCount++;
+        int numMoved = size - toIndex;
+        moveBytes(toIndex * width, fromIndex * width, numMoved * width);
+        size = size - (toIndex - fromIndex);
+    }
+
+    //检查传入下标是否越界
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //检查添加元素时，传入下标是否大于元素个数或者小于0
+    private void rangeCheckForAdd(int index) {
+        if (index > size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //返回异常信息
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    //遍历所有元素，并对每个元素进行传入规则处理
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        buffer();
+        final int expectedModCount = modCount;
+        final int size = this.size;
+        for (int i=0; modCount == expectedModCount && i < size; i++) {
+            action.accept(elementData(i));
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /*
+        排序：先把所有元素解码到堆上的数组中，用Arrays.sort排序后再编码写回。
+        c为null时按自然顺序排序。
+    */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        ByteBuffer b = buffer();
+        final int expectedModCount = modCount;
+        Object[] a = new Object[size];
+        for (int i = 0; i < size; i++)
+            a[i] = elementData(i);
+        Arrays.sort((E[]) a, c);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        for (int i = 0; i < a.length; i++)
+            codec.encode((E) a[i], b, i * width);
+        modCount++;
+    }
+
+    //返回一个包含全部元素的分割器
+    @Override
+    public Spliterator<E> spliterator() {
+        buffer();
+        return new OffHeapSpliterator<>(this, 0, -1, 0);
+    }
+
+    //基于索引的，二分分割的，懒加载的分割器，与ArrayList.ArrayListSpliterator相同，每次访问时解码
+    static final class OffHeapSpliterator<E> implements Spliterator<E> {
+
+        private final OffHeapArrayList<E> list;
+        private int index; // current index, modified on advance/split
+        private int fence; // -1 until used; then one past last index
+        private int expectedModCount; // initialized when fence set
+
+        OffHeapSpliterator(OffHeapArrayList<E> list, int origin, int fence,
+                           int expectedModCount) {
+            this.list = list;
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() { // initialize fence to size on first use
+            int hi;
+            if ((hi = fence) < 0) {
+                expectedModCount = list.modCount;
+                hi = fence = list.size;
+            }
+            return hi;
+        }
+
+        public OffHeapSpliterator<E> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null : // divide range in half unless too small
+                    new OffHeapSpliterator<E>(list, lo, index = mid,
+                            expectedModCount);
+        }
+
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int hi = getFence(), i = index;
+            if (i < hi) {
+                index = i + 1;
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                action.accept(list.elementData(i));
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int i = index, hi = getFence(), mc = expectedModCount;
+            //列表关闭或者被修改后，buffer可能已经被释放，所以先检查再访问
+            if (list.modCount == mc) {
+                index = hi;
+                for (; i < hi && list.modCount == mc; ++i)
+                    action.accept(list.elementData(i));
+                if (list.modCount == mc)
+                    return;
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            return (long) (getFence() - index);
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
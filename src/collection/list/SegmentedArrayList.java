@@ -0,0 +1,636 @@
+
+package java.util;
+
+import java.util.function.Consumer;
+
+
+/*
+    分段存储的ArrayList。
+    ArrayList扩容时要分配一个更大的连续数组，并把所有元素复制过去，
+    元素很多时，这会产生大对象（G1中的humongous对象）分配和明显的停顿，
+    并且容量受限于MAX_ARRAY_SIZE。
+    这个类把元素存放在固定长度的段（segment）中，扩容时只新增一个段，已有元素从不复制，
+    段目录（segments数组）很小，扩容时只复制段目录。
+    元素个数可以超过Integer.MAX_VALUE，此时size()返回Integer.MAX_VALUE，
+    需要使用longSize()、get(long)、set(long, E)访问超出int范围的元素。
+*/
+public class SegmentedArrayList<E> extends AbstractList<E>
+        implements List<E>, RandomAccess, Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = -2830471585164526613L;
+
+    //每个段长度为2的SEGMENT_SHIFT次方，即4096个元素
+    //压缩指针下一个段约16KB，远小于G1的humongous阈值
+    static final int SEGMENT_SHIFT = 12;
+
+    //每个段的长度
+    static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    //用于计算元素在段中的下标
+    static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    //段目录的默认长度
+    private static final int DEFAULT_DIRECTORY_CAPACITY = 4;
+
+    //数组最大长度，段目录和toArray返回的数组都不能超过它
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    //空段目录
+    private static final Object[][] EMPTY_SEGMENTS = {};
+
+    //段目录，segments[i]存放下标为[i*SEGMENT_SIZE, (i+1)*SEGMENT_SIZE)的元素
+    //transient关键字表示序列化时不序列化该字段
+    transient Object[][] segments;
+
+    //已分配的段个数，segments[0]到segments[segmentCount-1]都不为null
+    transient int segmentCount;
+
+    //记录元素个数，用long类型以支持超过Integer.MAX_VALUE个元素
+    private long size;
+
+    //创建一个空的SegmentedArrayList，第一次add时才会分配段
+    public SegmentedArrayList() {
+        this.segments = EMPTY_SEGMENTS;
+    }
+
+    //创建一个空的SegmentedArrayList，并预先分配能装下initialCapacity个元素的段
+    public SegmentedArrayList(long initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        this.segments = EMPTY_SEGMENTS;
+        ensureCapacity(initialCapacity);
+    }
+
+    //创建一个包含collection的所有元素的SegmentedArrayList
+    public SegmentedArrayList(Collection<? extends E> c) {
+        this.segments = EMPTY_SEGMENTS;
+        addAll(c);
+    }
+
+    //返回下标index所在的段
+    private static int segmentIndex(long index) {
+        return (int) (index >>> SEGMENT_SHIFT);
+    }
+
+    //返回下标index在段中的偏移量
+    private static int segmentOffset(long index) {
+        return (int) index & SEGMENT_MASK;
+    }
+
+    //确保能装下minCapacity个元素，不够时新增段
+    public void ensureCapacity(long minCapacity) {
+        if (minCapacity <= 0)
+            return;
+        //所需段的个数，向上取整
+        long needed = ((minCapacity - 1) >>> SEGMENT_SHIFT) + 1;
+        if (needed > MAX_ARRAY_SIZE)
+            throw new OutOfMemoryError();
+        int segs = (int) needed;
+        if (segs <= segmentCount)
+            return;
+        //段目录不够时扩容段目录，只复制段的引用，不复制元素
+        if (segs > segments.length) {
+            int newLength = Math.max(segments.length, DEFAULT_DIRECTORY_CAPACITY);
+            while (newLength < segs)
+                newLength = (newLength > (MAX_ARRAY_SIZE >> 1))
+                        ? MAX_ARRAY_SIZE : newLength << 1;
+            segments = Arrays.copyOf(segments, newLength);
+        }
+        //新增段
+        for (int i = segmentCount; i < segs; i++)
+            segments[i] = new Object[SEGMENT_SIZE];
+        segmentCount = segs;
+    }
+
+    //释放末尾未使用的段，并将段目录修剪为实际段个数
+    public void trimToSize() {
+        modCount++;
+        int used = (size == 0) ? 0 : segmentIndex(size - 1) + 1;
+        for (int i = used; i < segmentCount; i++)
+            segments[i] = null;
+        segmentCount = used;
+        segments = (used == 0) ? EMPTY_SEGMENTS : Arrays.copyOf(segments, used);
+    }
+
+    //返回元素个数，超过Integer.MAX_VALUE时返回Integer.MAX_VALUE
+    public int size() {
+        return (size > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) size;
+    }
+
+    //返回实际元素个数
+    public long longSize() {
+        return size;
+    }
+
+    //判断是否有存储元素
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //用indexOf方法判断是否包含传入元素
+    public boolean contains(Object o) {
+        return longIndexOf(o) >= 0;
+    }
+
+    //获取元素第一次出现的位置，位置超出int范围时返回-1，此时应使用longIndexOf
+    public int indexOf(Object o) {
+        long i = longIndexOf(o);
+        return (i > Integer.MAX_VALUE) ? -1 : (int) i;
+    }
+
+    //获取元素第一次出现的位置，按段顺序遍历
+    public long longIndexOf(Object o) {
+        final Object[][] segs = segments;
+        final long size = this.size;
+        for (long base = 0; base < size; base += SEGMENT_SIZE) {
+            Object[] seg = segs[segmentIndex(base)];
+            int end = (int) Math.min(SEGMENT_SIZE, size - base);
+            if (o == null) {
+                for (int j = 0; j < end; j++)
+                    if (seg[j] == null)
+                        return base + j;
+            } else {
+                for (int j = 0; j < end; j++)
+                    if (o.equals(seg[j]))
+                        return base + j;
+            }
+        }
+        return -1;
+    }
+
+    //返回元素最后一次出现的位置，位置超出int范围的元素不会被查找
+    public int lastIndexOf(Object o) {
+        for (int i = size() - 1; i >= 0; i--) {
+            Object e = elementData(i);
+            if (o == null ? e == null : o.equals(e))
+                return i;
+        }
+        return -1;
+    }
+
+    //返回index索引位置元素
+    @SuppressWarnings("unchecked")
+    E elementData(long index) {
+        return (E) segments[segmentIndex(index)][segmentOffset(index)];
+    }
+
+    //返回index索引位置元素
+    public E get(int index) {
+        rangeCheck(index);
+        return elementData(index);
+    }
+
+    //返回index索引位置元素，支持超出int范围的下标
+    public E get(long index) {
+        rangeCheck(index);
+        return elementData(index);
+    }
+
+    //将传入索引位置的元素变成新传入的元素，并返回旧元素
+    public E set(int index, E element) {
+        return set((long) index, element);
+    }
+
+    //将传入索引位置的元素变成新传入的元素，并返回旧元素，支持超出int范围的下标
+    public E set(long index, E element) {
+        rangeCheck(index);
+        Object[] seg = segments[segmentIndex(index)];
+        int offset = segmentOffset(index);
+        @SuppressWarnings("unchecked") E oldValue = (E) seg[offset];
+        seg[offset] = element;
+        return oldValue;
+    }
+
+    //新增元素在所有元素后面，段用完时只新增一个段
+    public boolean add(E e) {
+        modCount++;
+        final long s = size;
+        if (segmentIndex(s) >= segmentCount)
+            ensureCapacity(s + 1);
+        segments[segmentIndex(s)][segmentOffset(s)] = e;
+        size = s + 1;
+        return true;
+    }
+
+    //将新元素插入到指定索引位置，index之后的元素逐段后移一位
+    public void add(int index, E element) {
+        rangeCheckForAdd(index);
+        modCount++;
+        ensureCapacity(size + 1);
+        moveRange(index, index + 1, size - index);
+        segments[segmentIndex(index)][segmentOffset(index)] = element;
+        size++;
+    }
+
+    //删除指定位置元素，并返回被删除的元素
+    public E remove(int index) {
+        rangeCheck(index);
+        modCount++;
+        E oldValue = elementData(index);
+        moveRange(index + 1, index, size - index - 1);
+        long last = --size;
+        segments[segmentIndex(last)][segmentOffset(last)] = null; // clear to let GC do its work
+        return oldValue;
+    }
+
+    //删除传入指定元素，且只删除索引值最小的那个
+    public boolean remove(Object o) {
+        long index = longIndexOf(o);
+        if (index < 0)
+            return false;
+        removeAt(index);
+        return true;
+    }
+
+    //清空所有元素，只保留第一个段，其余段交给GC回收
+    public void clear() {
+        modCount++;
+        if (segmentCount > 0) {
+            Arrays.fill(segments[0], null);
+            for (int i = 1; i < segmentCount; i++)
+                segments[i] = null;
+            segmentCount = 1;
+        }
+        size = 0;
+    }
+
+    //将传入集合中的所有元素添加到所有元素后面，逐段复制
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        modCount++;
+        ensureCapacity(size + numNew);
+        copyIn(a, 0, size, numNew);
+        size += numNew;
+        return numNew != 0;
+    }
+
+    //将传入集合中所有元素插入到指定位置
+    public boolean addAll(int index, Collection<? extends E> c) {
+        rangeCheckForAdd(index);
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        modCount++;
+        ensureCapacity(size + numNew);
+        moveRange(index, index + numNew, size - index);
+        copyIn(a, 0, index, numNew);
+        size += numNew;
+        return numNew != 0;
+    }
+
+    //删除从开始坐标fromIndex到截止坐标toIndex的元素
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        moveRange(toIndex, fromIndex, size - toIndex);
+        long newSize = size - (toIndex - fromIndex);
+        // clear to let GC do its work
+        clearRange(newSize, size);
+        size = newSize;
+    }
+
+    /*
+        将[src, src+length)的元素移动到[dst, dst+length)，作用类似System.arraycopy，
+        区别是元素跨越多个段，每次只复制两个段都不越界的那一部分。
+        dst小于src时从前往后复制，反之从后往前复制，这样区间重叠时也不会覆盖未复制的元素。
+    */
+    private void moveRange(long src, long dst, long length) {
+        if (length <= 0 || src == dst)
+            return;
+        final Object[][] segs = segments;
+        if (dst < src) {
+            while (length > 0) {
+                int so = segmentOffset(src), d = segmentOffset(dst);
+                int n = (int) Math.min(length, SEGMENT_SIZE - Math.max(so, d));
+                System.arraycopy(segs[segmentIndex(src)], so,
+                        segs[segmentIndex(dst)], d, n);
+                src += n; dst += n; length -= n;
+            }
+        } else {
+            //从末尾开始复制，srcEnd和dstEnd都是不包含的末尾下标
+            long srcEnd = src + length, dstEnd = dst + length;
+            while (length > 0) {
+                //末尾下标所在段中，末尾之前的元素个数
+                int se = segmentOffset(srcEnd - 1) + 1, de = segmentOffset(dstEnd - 1) + 1;
+                int n = (int) Math.min(length, Math.min(se, de));
+                System.arraycopy(segs[segmentIndex(srcEnd - 1)], se - n,
+                        segs[segmentIndex(dstEnd - 1)], de - n, n);
+                srcEnd -= n; dstEnd -= n; length -= n;
+            }
+        }
+    }
+
+    //将数组a中从from开始的length个元素复制到下标dst开始的位置
+    private void copyIn(Object[] a, int from, long dst, int length) {
+        while (length > 0) {
+            int d = segmentOffset(dst);
+            int n = Math.min(length, SEGMENT_SIZE - d);
+            System.arraycopy(a, from, segments[segmentIndex(dst)], d, n);
+            from += n; dst += n; length -= n;
+        }
+    }
+
+    //将[from, to)位置的元素赋值为null
+    private void clearRange(long from, long to) {
+        while (from < to) {
+            int o = segmentOffset(from);
+            int n = (int) Math.min(to - from, SEGMENT_SIZE - o);
+            Arrays.fill(segments[segmentIndex(from)], o, o + n, null);
+            from += n;
+        }
+    }
+
+    //检查传入下标是否越界
+    private void rangeCheck(long index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //检查添加元素时，传入下标是否大于元素个数或者小于0
+    private void rangeCheckForAdd(long index) {
+        if (index > size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //返回异常信息
+    private String outOfBoundsMsg(long index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    //返回所有元素组成的数组，元素个数超过数组最大长度时抛出异常
+    public Object[] toArray() {
+        if (size > MAX_ARRAY_SIZE)
+            throw new OutOfMemoryError("Required array size too large");
+        Object[] a = new Object[(int) size];
+        copyOut(a);
+        return a;
+    }
+
+    //返回存储元素的指定类型数组
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (size > MAX_ARRAY_SIZE)
+            throw new OutOfMemoryError("Required array size too large");
+        int n = (int) size;
+        if (a.length < n)
+            a = (T[]) java.lang.reflect.Array.newInstance(
+                    a.getClass().getComponentType(), n);
+        copyOut(a);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    //将所有元素逐段复制到数组a中
+    private void copyOut(Object[] a) {
+        int n = (int) size;
+        for (int i = 0, base = 0; base < n; i++, base += SEGMENT_SIZE)
+            System.arraycopy(segments[i], 0, a, base, Math.min(SEGMENT_SIZE, n - base));
+    }
+
+    //克隆，每个段都会被复制
+    public Object clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            SegmentedArrayList<E> v = (SegmentedArrayList<E>) super.clone();
+            int used = (size == 0) ? 0 : segmentIndex(size - 1) + 1;
+            v.segments = (used == 0) ? EMPTY_SEGMENTS : new Object[used][];
+            for (int i = 0; i < used; i++)
+                v.segments[i] = segments[i].clone();
+            v.segmentCount = used;
+            v.modCount = 0;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+    }
+
+    //遍历所有元素，并对每个元素进行传入规则处理，按段遍历
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        final Object[][] segs = segments;
+        final long size = this.size;
+        for (long base = 0; base < size && modCount == expectedModCount; base += SEGMENT_SIZE) {
+            Object[] seg = segs[segmentIndex(base)];
+            int end = (int) Math.min(SEGMENT_SIZE, size - base);
+            for (int j = 0; j < end && modCount == expectedModCount; j++) {
+                @SuppressWarnings("unchecked") E e = (E) seg[j];
+                action.accept(e);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //返回一个迭代器，支持超出int范围的元素
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    //迭代器内部类，结构与ArrayList.Itr相同，下标使用long类型
+    private class Itr implements Iterator<E> {
+        //下一个元素的索引
+        long cursor;
+        //刚被读取的元素下标，-1表示没有
+        long lastRet = -1;
+        int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return cursor != size;
+        }
+
+        public E next() {
+            checkForComodification();
+            long i = cursor;
+            if (i >= size)
+                throw new NoSuchElementException();
+            if (segmentIndex(i) >= segmentCount)
+                throw new ConcurrentModificationException();
+            cursor = i + 1;
+            return elementData(lastRet = i);
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            try {
+                removeAt(lastRet);
+                cursor = lastRet;
+                lastRet = -1;
+                expectedModCount = modCount;
+            } catch (IndexOutOfBoundsException ex) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    //删除指定位置元素，支持超出int范围的下标
+    private void removeAt(long index) {
+        rangeCheck(index);
+        modCount++;
+        moveRange(index + 1, index, size - index - 1);
+        long last = --size;
+        segments[segmentIndex(last)][segmentOffset(last)] = null; // clear to let GC do its work
+    }
+
+    //私有方法，将实例序列化
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException{
+        // Write out element count, and any hidden stuff
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+
+        // Write out all elements in the proper order.
+        for (long i = 0; i < size; i++) {
+            s.writeObject(elementData(i));
+        }
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //私有方法，从反序列化中重构实例，按元素个数逐段分配
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        segments = EMPTY_SEGMENTS;
+        segmentCount = 0;
+
+        // Read in size, and any hidden stuff
+        s.defaultReadObject();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+
+        //逐段分配，避免伪造的size一次性分配过多内存
+        for (long i = 0; i < size; i++) {
+            if (segmentOffset(i) == 0)
+                ensureCapacity(i + 1);
+            segments[segmentIndex(i)][segmentOffset(i)] = s.readObject();
+        }
+    }
+
+    //返回一个按段分割的分割器
+    @Override
+    public Spliterator<E> spliterator() {
+        return new SegmentSpliterator<>(this, 0, -1, 0);
+    }
+
+    /*
+        按段边界分割的分割器，结构与ArrayList.ArrayListSpliterator相同，下标使用long类型。
+        范围跨越多个段时，在离中点最近的段边界处分割，每个分割器只处理完整的段；
+        范围只在一个段内时，才退回二分分割。
+    */
+    static final class SegmentSpliterator<E> implements Spliterator<E> {
+
+        private final SegmentedArrayList<E> list;
+        //分割器起始索引（包含）
+        private long index; // current index, modified on advance/split
+        //分割器末尾索引（不包含），-1表示到最后一个元素
+        private long fence; // -1 until used; then one past last index
+        private int expectedModCount; // initialized when fence set
+
+        SegmentSpliterator(SegmentedArrayList<E> list, long origin, long fence,
+                           int expectedModCount) {
+            this.list = list; // OK if null unless traversed
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        //获取实际末尾索引
+        private long getFence() { // initialize fence to size on first use
+            long hi;
+            SegmentedArrayList<E> lst;
+            if ((hi = fence) < 0) {
+                if ((lst = list) == null)
+                    hi = fence = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    hi = fence = lst.size;
+                }
+            }
+            return hi;
+        }
+
+        //获取新的分割器，优先在段边界分割
+        public SegmentSpliterator<E> trySplit() {
+            long hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            //中点向下取整到段边界，若落在lo之前，则向上取整
+            long boundary = mid & ~(long) SEGMENT_MASK;
+            if (boundary <= lo)
+                boundary += SEGMENT_SIZE;
+            if (boundary < hi)
+                mid = boundary;
+            return (lo >= mid) ? null :
+                    new SegmentSpliterator<E>(list, lo, index = mid,
+                            expectedModCount);
+        }
+
+        //对当前下标元素进行传入规则处理
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            long hi = getFence(), i = index;
+            if (i < hi) {
+                index = i + 1;
+                E e = list.elementData(i);
+                action.accept(e);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        //对剩下的元素逐段处理
+        public void forEachRemaining(Consumer<? super E> action) {
+            long i, hi; int mc;
+            SegmentedArrayList<E> lst; Object[][] segs;
+            if (action == null)
+                throw new NullPointerException();
+            if ((lst = list) != null && (segs = lst.segments) != null) {
+                if ((hi = fence) < 0) {
+                    mc = lst.modCount;
+                    hi = lst.size;
+                }
+                else
+                    mc = expectedModCount;
+                if ((i = index) >= 0 && (index = hi) <= (long) lst.segmentCount << SEGMENT_SHIFT) {
+                    while (i < hi) {
+                        Object[] seg = segs[segmentIndex(i)];
+                        int j = segmentOffset(i);
+                        int end = (int) Math.min(SEGMENT_SIZE, j + (hi - i));
+                        i += end - j;
+                        for (; j < end; j++) {
+                            @SuppressWarnings("unchecked") E e = (E) seg[j];
+                            action.accept(e);
+                        }
+                    }
+                    if (lst.modCount == mc)
+                        return;
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        //返回分割器中未处理元素个数
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
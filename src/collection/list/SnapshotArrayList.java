@@ -0,0 +1,552 @@
+
+package java.util;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+
+/*
+    写时复制（copy-on-write）的ArrayList，适合读多写少的配置列表、监听器列表。
+    ArrayList在for-each中删除元素会让Itr.checkForComodification抛出ConcurrentModificationException，
+    或者悄悄跳过元素（见src/Test.java）。
+    这个类的elementData是volatile的不可变快照，每次修改都在锁内复制出一个新数组，修改完成后再替换elementData：
+    1. 读操作（get、size、contains、indexOf等）不加锁，直接读取当前快照
+    2. 迭代器和分割器遍历创建时的快照，不会抛出ConcurrentModificationException，也看不到之后的修改，不支持remove/set/add
+    3. 需要连续做多次修改时，用mutate在一次复制中完成，其他线程只会看到修改前或全部修改后的列表
+    subList返回的是AbstractList的视图，不是快照。
+*/
+public class SnapshotArrayList<E> extends AbstractList<E>
+        implements List<E>, RandomAccess, Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = -3213816378095473852L;
+
+    //空快照
+    private static final Object[] EMPTY_ELEMENTDATA = {};
+
+    //写操作使用的锁，读操作不加锁
+    transient Object lock = new Object();
+
+    //当前快照，只能整体替换，不能修改其中的元素
+    private transient volatile Object[] elementData;
+
+    //创建一个空的SnapshotArrayList
+    public SnapshotArrayList() {
+        elementData = EMPTY_ELEMENTDATA;
+    }
+
+    //创建一个包含collection的所有元素的SnapshotArrayList
+    public SnapshotArrayList(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        // c.toArray might (incorrectly) not return Object[] (see 6260652)
+        if (a.getClass() != Object[].class)
+            a = Arrays.copyOf(a, a.length, Object[].class);
+        elementData = a;
+    }
+
+    //返回当前快照
+    final Object[] getArray() {
+        return elementData;
+    }
+
+    //替换当前快照
+    final void setArray(Object[] a) {
+        elementData = a;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E elementAt(Object[] a, int index) {
+        return (E) a[index];
+    }
+
+    //返回元素个数
+    public int size() {
+        return getArray().length;
+    }
+
+    //判断是否有存储元素
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    //在a的[index, fence)中查找o第一次出现的位置
+    private static int indexOf(Object o, Object[] a, int index, int fence) {
+        if (o == null) {
+            for (int i = index; i < fence; i++)
+                if (a[i] == null)
+                    return i;
+        } else {
+            for (int i = index; i < fence; i++)
+                if (o.equals(a[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    //在a的[0, index]中查找o最后一次出现的位置
+    private static int lastIndexOf(Object o, Object[] a, int index) {
+        if (o == null) {
+            for (int i = index; i >= 0; i--)
+                if (a[i] == null)
+                    return i;
+        } else {
+            for (int i = index; i >= 0; i--)
+                if (o.equals(a[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    //判断是否包含传入元素
+    public boolean contains(Object o) {
+        Object[] a = getArray();
+        return indexOf(o, a, 0, a.length) >= 0;
+    }
+
+    //获取元素第一次出现的位置
+    public int indexOf(Object o) {
+        Object[] a = getArray();
+        return indexOf(o, a, 0, a.length);
+    }
+
+    //获取元素最后一次出现的位置
+    public int lastIndexOf(Object o) {
+        Object[] a = getArray();
+        return lastIndexOf(o, a, a.length - 1);
+    }
+
+    //克隆SnapshotArrayList，与原列表共享当前快照
+    public Object clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            SnapshotArrayList<E> clone = (SnapshotArrayList<E>) super.clone();
+            clone.lock = new Object();
+            clone.modCount = 0;
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+    }
+
+    //返回当前快照的副本
+    public Object[] toArray() {
+        Object[] a = getArray();
+        return Arrays.copyOf(a, a.length);
+    }
+
+    //将当前快照中的元素转存至指定泛型数组中
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] elements = getArray();
+        int len = elements.length;
+        if (a.length < len)
+            return (T[]) Arrays.copyOf(elements, len, a.getClass());
+        System.arraycopy(elements, 0, a, 0, len);
+        if (a.length > len)
+            a[len] = null;
+        return a;
+    }
+
+    // Positional Access Operations
+
+    //获取指定位置元素
+    public E get(int index) {
+        Object[] a = getArray();
+        rangeCheck(index, a.length);
+        return elementAt(a, index);
+    }
+
+    //替换指定位置元素，并返回旧元素
+    public E set(int index, E element) {
+        synchronized (lock) {
+            Object[] a = getArray();
+            rangeCheck(index, a.length);
+            E oldValue = elementAt(a, index);
+            if (oldValue != element) {
+                Object[] newElements = Arrays.copyOf(a, a.length);
+                newElements[index] = element;
+                setArray(newElements);
+            }
+            return oldValue;
+        }
+    }
+
+    //将元素添加到末尾
+    public boolean add(E e) {
+        synchronized (lock) {
+            Object[] a = getArray();
+            int len = a.length;
+            Object[] newElements = Arrays.copyOf(a, len + 1);
+            newElements[len] = e;
+            modCount++;
+            setArray(newElements);
+            return true;
+        }
+    }
+
+    //将元素插入到指定位置
+    public void add(int index, E element) {
+        synchronized (lock) {
+            Object[] a = getArray();
+            int len = a.length;
+            if (index > len || index < 0)
+                throw new IndexOutOfBoundsException(outOfBoundsMsg(index, len));
+            Object[] newElements = new Object[len + 1];
+            System.arraycopy(a, 0, newElements, 0, index);
+            System.arraycopy(a, index, newElements, index + 1, len - index);
+            newElements[index] = element;
+            modCount++;
+            setArray(newElements);
+        }
+    }
+
+    //删除指定位置元素，并返回被删除的元素
+    public E remove(int index) {
+        synchronized (lock) {
+            Object[] a = getArray();
+            int len = a.length;
+            rangeCheck(index, len);
+            E oldValue = elementAt(a, index);
+            Object[] newElements = new Object[len - 1];
+            System.arraycopy(a, 0, newElements, 0, index);
+            System.arraycopy(a, index + 1, newElements, index, len - index - 1);
+            modCount++;
+            setArray(newElements);
+            return oldValue;
+        }
+    }
+
+    //删除第一次出现的传入元素，先在锁外查找，锁内快照未变时直接删除
+    public boolean remove(Object o) {
+        Object[] snapshot = getArray();
+        int index = indexOf(o, snapshot, 0, snapshot.length);
+        if (index < 0)
+            return false;
+        synchronized (lock) {
+            Object[] a = getArray();
+            if (a != snapshot) {
+                //快照已被替换，重新查找
+                index = indexOf(o, a, 0, a.length);
+                if (index < 0)
+                    return false;
+            }
+            Object[] newElements = new Object[a.length - 1];
+            System.arraycopy(a, 0, newElements, 0, index);
+            System.arraycopy(a, index + 1, newElements, index, a.length - index - 1);
+            modCount++;
+            setArray(newElements);
+            return true;
+        }
+    }
+
+    //删除[fromIndex, toIndex)中的元素
+    protected void removeRange(int fromIndex, int toIndex) {
+        synchronized (lock) {
+            Object[] a = getArray();
+            int len = a.length;
+            if (fromIndex < 0 || toIndex > len || toIndex < fromIndex)
+                throw new IndexOutOfBoundsException();
+            int newlen = len - (toIndex - fromIndex);
+            Object[] newElements = new Object[newlen];
+            System.arraycopy(a, 0, newElements, 0, fromIndex);
+            System.arraycopy(a, toIndex, newElements, fromIndex, len - toIndex);
+            modCount++;
+            setArray(newElements);
+        }
+    }
+
+    //清空列表
+    public void clear() {
+        synchronized (lock) {
+            modCount++;
+            setArray(EMPTY_ELEMENTDATA);
+        }
+    }
+
+    //将collection中的元素全部添加到末尾，只复制一次
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] cs = c.toArray();
+        if (cs.length == 0)
+            return false;
+        synchronized (lock) {
+            Object[] a = getArray();
+            int len = a.length;
+            Object[] newElements = Arrays.copyOf(a, len + cs.length);
+            System.arraycopy(cs, 0, newElements, len, cs.length);
+            modCount++;
+            setArray(newElements);
+            return true;
+        }
+    }
+
+    //将collection中的元素全部插入到index位置，只复制一次
+    public boolean addAll(int index, Collection<? extends E> c) {
+        Object[] cs = c.toArray();
+        synchronized (lock) {
+            Object[] a = getArray();
+            int len = a.length;
+            if (index > len || index < 0)
+                throw new IndexOutOfBoundsException(outOfBoundsMsg(index, len));
+            if (cs.length == 0)
+                return false;
+            Object[] newElements = new Object[len + cs.length];
+            System.arraycopy(a, 0, newElements, 0, index);
+            System.arraycopy(cs, 0, newElements, index, cs.length);
+            System.arraycopy(a, index, newElements, index + cs.length, len - index);
+            modCount++;
+            setArray(newElements);
+            return true;
+        }
+    }
+
+    //删除所有包含在collection中的元素
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return bulkRemove(c, false);
+    }
+
+    //保留所有包含在collection中的元素
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return bulkRemove(c, true);
+    }
+
+    //删除或保留包含在c中的元素，c为List时与ArrayList一样换成HashSet查找
+    private boolean bulkRemove(Collection<?> c, boolean complement) {
+        synchronized (lock) {
+            Object[] a = getArray();
+            int len = a.length;
+            c = ArrayList.batchLookup(c, len);
+            Object[] kept = new Object[len];
+            int w = 0;
+            for (int r = 0; r < len; r++) {
+                Object e = a[r];
+                if (c.contains(e) == complement)
+                    kept[w++] = e;
+            }
+            if (w == len)
+                return false;
+            modCount++;
+            setArray(Arrays.copyOf(kept, w));
+            return true;
+        }
+    }
+
+    //删除符合规则的元素，规则抛出异常时列表不变
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        synchronized (lock) {
+            Object[] a = getArray();
+            int len = a.length;
+            Object[] kept = new Object[len];
+            int w = 0;
+            for (int r = 0; r < len; r++) {
+                E e = elementAt(a, r);
+                if (!filter.test(e))
+                    kept[w++] = e;
+            }
+            if (w == len)
+                return false;
+            modCount++;
+            setArray(Arrays.copyOf(kept, w));
+            return true;
+        }
+    }
+
+    //按照传入的规则替换所有元素，规则抛出异常时列表不变
+    @Override
+    public void replaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        synchronized (lock) {
+            Object[] a = getArray();
+            Object[] newElements = Arrays.copyOf(a, a.length);
+            for (int i = 0; i < newElements.length; i++)
+                newElements[i] = operator.apply(elementAt(newElements, i));
+            setArray(newElements);
+        }
+    }
+
+    //排序，在副本上排序后整体替换，比较器抛出异常时列表不变
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        synchronized (lock) {
+            Object[] a = getArray();
+            Object[] newElements = Arrays.copyOf(a, a.length);
+            Arrays.sort((E[]) newElements, c);
+            setArray(newElements);
+        }
+    }
+
+    /*
+        在一次复制中完成多次修改。
+        在锁内把当前快照复制到一个ArrayList中交给action修改（唯一的一次复制），action正常返回后直接发布它的数组，
+        只有元素个数与数组长度不同时才修剪；action抛出异常时快照不变。其他线程在此期间读到的都是修改前的快照。
+        传给action的列表只在action执行期间有效，发布后会被清空。
+        action中不能再修改这个列表，否则这些修改会被覆盖，所以此时抛出ConcurrentModificationException异常，快照保留action中的修改。
+    */
+    public void mutate(Consumer<? super List<E>> action) {
+        Objects.requireNonNull(action);
+        synchronized (lock) {
+            Object[] a = getArray();
+            ArrayList<E> working = new ArrayList<>(a.length);
+            working.appendAll(a, a.length);
+            action.accept(working);
+            if (getArray() != a)
+                throw new ConcurrentModificationException("list modified inside mutate");
+            Object[] newElements = working.detachArray();
+            modCount++;
+            setArray((newElements.length == 0) ? EMPTY_ELEMENTDATA : newElements);
+        }
+    }
+
+    //遍历当前快照
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        for (Object x : getArray()) {
+            @SuppressWarnings("unchecked") E e = (E) x;
+            action.accept(e);
+        }
+    }
+
+    //检查下标是否越界
+    private static void rangeCheck(int index, int length) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index, length));
+    }
+
+    //构造IndexOutOfBoundsException异常的详细信息
+    private static String outOfBoundsMsg(int index, int size) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    //返回遍历当前快照的迭代器
+    public Iterator<E> iterator() {
+        return new COWIterator<E>(getArray(), 0);
+    }
+
+    public ListIterator<E> listIterator() {
+        return new COWIterator<E>(getArray(), 0);
+    }
+
+    public ListIterator<E> listIterator(int index) {
+        Object[] a = getArray();
+        if (index < 0 || index > a.length)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index, a.length));
+        return new COWIterator<E>(a, index);
+    }
+
+    //返回遍历当前快照的分割器
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator
+                (getArray(), Spliterator.IMMUTABLE | Spliterator.ORDERED);
+    }
+
+    /*
+        快照迭代器，遍历创建时的数组，不检查modCount，不会抛出ConcurrentModificationException。
+        快照不可修改，所以remove、set、add都抛出UnsupportedOperationException异常。
+    */
+    static final class COWIterator<E> implements ListIterator<E> {
+        //创建迭代器时的快照
+        private final Object[] snapshot;
+        //下一个元素的索引
+        private int cursor;
+
+        COWIterator(Object[] elements, int initialCursor) {
+            cursor = initialCursor;
+            snapshot = elements;
+        }
+
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (! hasNext())
+                throw new NoSuchElementException();
+            return (E) snapshot[cursor++];
+        }
+
+        @SuppressWarnings("unchecked")
+        public E previous() {
+            if (! hasPrevious())
+                throw new NoSuchElementException();
+            return (E) snapshot[--cursor];
+        }
+
+        public int nextIndex() {
+            return cursor;
+        }
+
+        public int previousIndex() {
+            return cursor-1;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void set(E e) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void add(E e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            Object[] elements = snapshot;
+            final int size = elements.length;
+            for (int i = cursor; i < size; i++) {
+                action.accept((E) elements[i]);
+            }
+            cursor = size;
+        }
+    }
+
+    //私有方法，将实例序列化
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        s.defaultWriteObject();
+
+        Object[] elements = getArray();
+        // Write out array length
+        s.writeInt(elements.length);
+
+        // Write out all elements in the proper order.
+        for (Object element : elements)
+            s.writeObject(element);
+    }
+
+    //私有方法，从反序列化中重构实例
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        // bind to new lock
+        lock = new Object();
+
+        // Read in array length and allocate array
+        int len = s.readInt();
+        if (len < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + len);
+        Object[] elements = (len == 0) ? EMPTY_ELEMENTDATA : new Object[len];
+
+        // Read in all elements in the proper order.
+        for (int i = 0; i < len; i++)
+            elements[i] = s.readObject();
+        setArray(elements);
+    }
+}
@@ -0,0 +1,584 @@
+
+package java.util;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+
+/*
+    用StampedLock保护的线程安全ArrayList，适合读写混合的场景。
+    Collections.synchronizedList的每次get都要获取同一个锁，读线程之间也会互相阻塞；
+    SnapshotArrayList的每次写都要复制整个数组，写多时代价太高。
+    这个类的存储结构与ArrayList相同：
+    1. get、size先用乐观读（tryOptimisticRead）直接读取elementData和size，
+       validate成功说明期间没有写操作，结果有效；失败时再获取读锁重新读取
+    2. add、set、remove、扩容等写操作获取写锁
+    3. contains、indexOf、forEach、removeIf、replaceAll、sort等需要对元素调用外部代码的操作只获取一次锁，在锁内处理所有元素。
+       乐观读期间读到的元素可能还没有完整发布，不能交给equals等外部代码，所以这些操作不使用乐观读
+    StampedLock不可重入，批量操作传入的action、filter、comparator以及元素的equals中不能再访问这个列表，否则会死锁。
+    iterator和spliterator遍历调用时的快照，不会抛出ConcurrentModificationException，也看不到之后的修改；
+    listIterator和subList沿用AbstractList的实现，只有单个操作是线程安全的。
+*/
+public class StampedArrayList<E> extends AbstractList<E>
+        implements List<E>, RandomAccess, java.io.Serializable
+{
+    private static final long serialVersionUID = 4417360431729382316L;
+
+    //默认容量
+    private static final int DEFAULT_CAPACITY = 10;
+
+    //数组最大长度
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    //空数组
+    private static final Object[] EMPTY_ELEMENTDATA = {};
+
+    //读写锁，读操作优先使用乐观读
+    transient StampedLock lock = new StampedLock();
+
+    //存储元素的数组，只在写锁内修改
+    transient Object[] elementData;
+
+    //元素个数，只在写锁内修改
+    private transient int size;
+
+    //创建一个空的StampedArrayList，第一次add时才分配数组
+    public StampedArrayList() {
+        this.elementData = EMPTY_ELEMENTDATA;
+    }
+
+    //创建一个初始容量为initialCapacity的StampedArrayList
+    public StampedArrayList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        this.elementData = (initialCapacity == 0) ? EMPTY_ELEMENTDATA : new Object[initialCapacity];
+    }
+
+    //创建一个包含collection的所有元素的StampedArrayList
+    public StampedArrayList(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        // c.toArray might (incorrectly) not return Object[] (see 6260652)
+        if (a.getClass() != Object[].class)
+            a = Arrays.copyOf(a, a.length, Object[].class);
+        this.elementData = a;
+        this.size = a.length;
+    }
+
+    //确保容量至少为minCapacity，调用者必须持有写锁
+    private void ensureCapacityInternal(int minCapacity) {
+        if (minCapacity - elementData.length > 0)
+            grow(minCapacity);
+    }
+
+    //扩容，新容量由ArrayList的默认扩容策略计算，调用者必须持有写锁
+    private void grow(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        int oldCapacity = elementData.length;
+        int newCapacity = ArrayList.GrowthPolicy.DEFAULT.newCapacity(oldCapacity, minCapacity);
+        if (newCapacity < DEFAULT_CAPACITY)
+            newCapacity = DEFAULT_CAPACITY;
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = (minCapacity > MAX_ARRAY_SIZE) ? Integer.MAX_VALUE : MAX_ARRAY_SIZE;
+        elementData = Arrays.copyOf(elementData, newCapacity);
+    }
+
+    //确保容量至少为minCapacity
+    public void ensureCapacity(int minCapacity) {
+        long stamp = lock.writeLock();
+        try {
+            ensureCapacityInternal(minCapacity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //将数组修剪为实际元素个数
+    public void trimToSize() {
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            if (size < elementData.length)
+                elementData = (size == 0) ? EMPTY_ELEMENTDATA : Arrays.copyOf(elementData, size);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //返回元素个数，乐观读
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int n = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                n = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return n;
+    }
+
+    //判断是否有存储元素
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /*
+        获取指定位置元素，乐观读。
+        乐观读期间elementData和size可能来自不同的写操作，所以读取数组前要检查index是否在数组长度内；
+        读到的值只有validate成功后才会使用。
+    */
+    public E get(int index) {
+        long stamp = lock.tryOptimisticRead();
+        Object[] a = elementData;
+        int n = size;
+        Object e = (index >= 0 && index < a.length) ? a[index] : null;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                rangeCheck(index, size);
+                return elementData(index);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        rangeCheck(index, n);
+        @SuppressWarnings("unchecked") E result = (E) e;
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementData(int index) {
+        return (E) elementData[index];
+    }
+
+    //在a的[0, n)中查找o第一次出现的位置，调用方持有锁
+    private static int indexOf(Object o, Object[] a, int n) {
+        if (o == null) {
+            for (int i = 0; i < n; i++)
+                if (a[i] == null)
+                    return i;
+        } else {
+            for (int i = 0; i < n; i++)
+                if (o.equals(a[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    //在a的[0, n)中查找o最后一次出现的位置，调用方持有锁
+    private static int lastIndexOf(Object o, Object[] a, int n) {
+        int start = n - 1;
+        if (o == null) {
+            for (int i = start; i >= 0; i--)
+                if (a[i] == null)
+                    return i;
+        } else {
+            for (int i = start; i >= 0; i--)
+                if (o.equals(a[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    /*
+        获取元素第一次出现的位置，持有读锁。
+        扫描要对元素调用equals，乐观读时元素可能还没有完整发布，equals抛出的异常或副作用会在validate之前发生，
+        所以不使用乐观读；读锁之间不互斥，多个线程仍可以同时查找。
+    */
+    public int indexOf(Object o) {
+        long stamp = lock.readLock();
+        try {
+            return indexOf(o, elementData, size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //获取元素最后一次出现的位置，持有读锁
+    public int lastIndexOf(Object o) {
+        long stamp = lock.readLock();
+        try {
+            return lastIndexOf(o, elementData, size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //判断是否包含传入元素
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    //返回所有元素的副本，持有读锁
+    public Object[] toArray() {
+        long stamp = lock.readLock();
+        try {
+            return Arrays.copyOf(elementData, size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //将所有元素转存至指定泛型数组中，持有读锁
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        long stamp = lock.readLock();
+        try {
+            if (a.length < size)
+                return (T[]) Arrays.copyOf(elementData, size, a.getClass());
+            System.arraycopy(elementData, 0, a, 0, size);
+            if (a.length > size)
+                a[size] = null;
+            return a;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //替换指定位置元素，并返回旧元素
+    public E set(int index, E element) {
+        long stamp = lock.writeLock();
+        try {
+            rangeCheck(index, size);
+            E oldValue = elementData(index);
+            elementData[index] = element;
+            return oldValue;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //将元素添加到末尾
+    public boolean add(E e) {
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            ensureCapacityInternal(size + 1);
+            elementData[size++] = e;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //将元素插入到指定位置
+    public void add(int index, E element) {
+        long stamp = lock.writeLock();
+        try {
+            if (index > size || index < 0)
+                throw new IndexOutOfBoundsException(outOfBoundsMsg(index, size));
+            modCount++;
+            ensureCapacityInternal(size + 1);
+            System.arraycopy(elementData, index, elementData, index + 1,
+                    size - index);
+            elementData[index] = element;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //删除指定位置元素，并返回被删除的元素
+    public E remove(int index) {
+        long stamp = lock.writeLock();
+        try {
+            rangeCheck(index, size);
+            modCount++;
+            E oldValue = elementData(index);
+            fastRemove(index);
+            return oldValue;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //删除第一次出现的传入元素
+    public boolean remove(Object o) {
+        long stamp = lock.writeLock();
+        try {
+            int index = indexOf(o, elementData, size);
+            if (index < 0)
+                return false;
+            modCount++;
+            fastRemove(index);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //删除指定位置元素，调用者必须持有写锁
+    private void fastRemove(int index) {
+        int numMoved = size - index - 1;
+        if (numMoved > 0)
+            System.arraycopy(elementData, index+1, elementData, index,
+                    numMoved);
+        elementData[--size] = null; // clear to let GC do its work
+    }
+
+    //删除[fromIndex, toIndex)中的元素
+    protected void removeRange(int fromIndex, int toIndex) {
+        long stamp = lock.writeLock();
+        try {
+            if (fromIndex < 0 || toIndex > size || toIndex < fromIndex)
+                throw new IndexOutOfBoundsException();
+            modCount++;
+            System.arraycopy(elementData, toIndex, elementData, fromIndex,
+                    size - toIndex);
+            int newSize = size - (toIndex - fromIndex);
+            Arrays.fill(elementData, newSize, size, null);
+            size = newSize;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //清空列表
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            Arrays.fill(elementData, 0, size, null);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //将collection中的元素全部添加到末尾，collection在锁外转成数组
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            ensureCapacityInternal(size + numNew);
+            System.arraycopy(a, 0, elementData, size, numNew);
+            size += numNew;
+            return numNew != 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //将collection中的元素全部插入到index位置
+    public boolean addAll(int index, Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        long stamp = lock.writeLock();
+        try {
+            if (index > size || index < 0)
+                throw new IndexOutOfBoundsException(outOfBoundsMsg(index, size));
+            modCount++;
+            ensureCapacityInternal(size + numNew);
+            int numMoved = size - index;
+            if (numMoved > 0)
+                System.arraycopy(elementData, index, elementData, index + numNew,
+                        numMoved);
+            System.arraycopy(a, 0, elementData, index, numNew);
+            size += numNew;
+            return numNew != 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //删除所有包含在collection中的元素
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return batchRemove(c, false);
+    }
+
+    //保留所有包含在collection中的元素
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return batchRemove(c, true);
+    }
+
+    //批量删除，持有一次写锁，c为List时与ArrayList一样换成HashSet查找
+    private boolean batchRemove(Collection<?> c, boolean complement) {
+        long stamp = lock.writeLock();
+        try {
+            final Object[] elementData = this.elementData;
+            c = ArrayList.batchLookup(c, size);
+            int r = 0, w = 0;
+            boolean modified = false;
+            try {
+                for (; r < size; r++)
+                    if (c.contains(elementData[r]) == complement)
+                        elementData[w++] = elementData[r];
+            } finally {
+                // Preserve behavioral compatibility with AbstractCollection,
+                // even if c.contains() throws.
+                if (r != size) {
+                    System.arraycopy(elementData, r,
+                            elementData, w,
+                            size - r);
+                    w += size - r;
+                }
+                if (w != size) {
+                    // clear to let GC do its work
+                    for (int i = w; i < size; i++)
+                        elementData[i] = null;
+                    modCount += size - w;
+                    size = w;
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //遍历所有元素，持有一次读锁，action中不能访问这个列表
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        long stamp = lock.readLock();
+        try {
+            final Object[] elementData = this.elementData;
+            final int size = this.size;
+            for (int i = 0; i < size; i++) {
+                @SuppressWarnings("unchecked") E e = (E) elementData[i];
+                action.accept(e);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //删除符合规则的元素，持有一次写锁，filter抛出异常时列表不变
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        long stamp = lock.writeLock();
+        try {
+            final Object[] elementData = this.elementData;
+            final int size = this.size;
+            //先找到所有要删除的元素，再统一移动，保证filter抛出异常时列表不变
+            int removeCount = 0;
+            final BitSet removeSet = new BitSet(size);
+            for (int i = 0; i < size; i++) {
+                @SuppressWarnings("unchecked") E e = (E) elementData[i];
+                if (filter.test(e)) {
+                    removeSet.set(i);
+                    removeCount++;
+                }
+            }
+            if (removeCount == 0)
+                return false;
+            final int newSize = size - removeCount;
+            for (int i = 0, j = 0; (i < size) && (j < newSize); i++, j++) {
+                i = removeSet.nextClearBit(i);
+                elementData[j] = elementData[i];
+            }
+            Arrays.fill(elementData, newSize, size, null);
+            this.size = newSize;
+            modCount++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //按照传入的规则替换所有元素，持有一次写锁
+    @Override
+    public void replaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        long stamp = lock.writeLock();
+        try {
+            final Object[] elementData = this.elementData;
+            final int size = this.size;
+            for (int i = 0; i < size; i++) {
+                @SuppressWarnings("unchecked") E e = (E) elementData[i];
+                elementData[i] = operator.apply(e);
+            }
+            modCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //排序，持有一次写锁
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        long stamp = lock.writeLock();
+        try {
+            Arrays.sort((E[]) elementData, 0, size, c);
+            modCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //检查下标是否越界
+    private static void rangeCheck(int index, int size) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index, size));
+    }
+
+    //构造IndexOutOfBoundsException异常的详细信息
+    private static String outOfBoundsMsg(int index, int size) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    //返回遍历当前快照的迭代器，快照在读锁内复制
+    public Iterator<E> iterator() {
+        return new SnapshotArrayList.COWIterator<E>(toArray(), 0);
+    }
+
+    //返回遍历当前快照的分割器
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(toArray(), Spliterator.ORDERED);
+    }
+
+    //私有方法，将实例序列化，持有读锁
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        long stamp = lock.readLock();
+        try {
+            s.defaultWriteObject();
+
+            // Write out size
+            s.writeInt(size);
+
+            // Write out all elements in the proper order.
+            for (int i = 0; i < size; i++)
+                s.writeObject(elementData[i]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //私有方法，从反序列化中重构实例
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        // bind to new lock
+        lock = new StampedLock();
+
+        // Read in size
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        Object[] a = (n == 0) ? EMPTY_ELEMENTDATA : new Object[n];
+
+        // Read in all elements in the proper order.
+        for (int i = 0; i < n; i++)
+            a[i] = s.readObject();
+        elementData = a;
+        size = n;
+    }
+}
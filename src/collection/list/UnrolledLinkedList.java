@@ -0,0 +1,1037 @@
+
+package java.util;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+
+/*
+    展开链表（unrolled linked list），提供与LinkedList相同的List和Deque接口。
+    LinkedList的每个节点只存放一个元素，一个Node对象约32字节，每次linkLast/unlinkFirst都会创建或丢弃一个节点，
+    沿着next遍历时几乎每个元素都会产生一次缓存未命中。
+    这个类的每个节点存放一个长度为nodeCapacity的元素数组，节点内的元素连续存放在items[0, count)中：
+    插入时若节点已满，则优先放到相邻节点的空位，否则新建节点或把节点拆分成两半；
+    删除后若节点与后继节点的元素合计不超过nodeCapacity的3/4，则把后继节点合并进来，节点为空时断开该节点。
+    这样对象个数约为LinkedList的1/nodeCapacity，按下标查找时按节点跳过，遍历和分割器都按节点内的数组进行。
+    与LinkedList一样，这个类不是线程安全的。
+*/
+public class UnrolledLinkedList<E>
+        extends AbstractSequentialList<E>
+        implements List<E>, Deque<E>, Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = 3457831652497412374L;
+
+    //默认的节点容量
+    static final int DEFAULT_NODE_CAPACITY = 32;
+
+    //节点容量的最小值，拆分后的两个节点至少各有2个元素
+    static final int MIN_NODE_CAPACITY = 4;
+
+    //记录元素个数
+    transient int size = 0;
+
+    //指向第一个节点
+    transient Node<E> first;
+
+    //指向最后一个节点
+    transient Node<E> last;
+
+    //每个节点最多存放的元素个数
+    private final int nodeCapacity;
+
+    //创建一个空的UnrolledLinkedList，节点容量为DEFAULT_NODE_CAPACITY
+    public UnrolledLinkedList() {
+        this.nodeCapacity = DEFAULT_NODE_CAPACITY;
+    }
+
+    //创建一个空的UnrolledLinkedList，并指定节点容量
+    public UnrolledLinkedList(int nodeCapacity) {
+        if (nodeCapacity < MIN_NODE_CAPACITY)
+            throw new IllegalArgumentException("Illegal node capacity: " +
+                    nodeCapacity);
+        this.nodeCapacity = nodeCapacity;
+    }
+
+    //创建一个包含collection的所有元素的UnrolledLinkedList
+    public UnrolledLinkedList(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    //返回节点容量
+    public int nodeCapacity() {
+        return nodeCapacity;
+    }
+
+    //在pred和succ之间插入一个新的空节点，pred为null表示插入到链表头部，succ为null表示插入到链表尾部
+    private Node<E> insertNode(Node<E> pred, Node<E> succ) {
+        final Node<E> n = new Node<>(pred, nodeCapacity, succ);
+        if (pred == null)
+            first = n;
+        else
+            pred.next = n;
+        if (succ == null)
+            last = n;
+        else
+            succ.prev = n;
+        return n;
+    }
+
+    //断开节点x，x中的元素必须已经被移走或删除
+    private void unlinkNode(Node<E> x) {
+        final Node<E> prev = x.prev;
+        final Node<E> next = x.next;
+        if (prev == null)
+            first = next;
+        else {
+            prev.next = next;
+            x.prev = null;
+        }
+        if (next == null)
+            last = prev;
+        else {
+            next.prev = prev;
+            x.next = null;
+        }
+    }
+
+    /*
+        将e插入到节点x的offset位置，offset可以等于x.count，表示放在x的最后一个元素之后。
+        x未满时直接在节点内移动元素；x已满时：
+        1. offset为末尾且后继节点有空位，则放到后继节点的开头；offset为0且前驱节点有空位，则放到前驱节点的末尾
+        2. offset为末尾或开头，则在x之后或之前新建一个节点，这样连续的addLast/addFirst会把节点填满
+        3. 否则把x的后一半元素移到新建的后继节点，再插入到对应的一半中
+        返回e最终所在的节点：返回x时e的偏移量为offset；返回x之前的节点时e是该节点的最后一个元素；
+        返回x之后的节点时e的偏移量为offset-x.count。
+    */
+    private Node<E> linkAt(Node<E> x, int offset, E e) {
+        final int cap = nodeCapacity;
+        Node<E> target = x;
+        if (x.count == cap) {
+            Node<E> n;
+            if (offset == cap && (n = x.next) != null && n.count < cap) {
+                target = n;
+                offset = 0;
+            } else if (offset == 0 && (n = x.prev) != null && n.count < cap) {
+                target = n;
+                offset = n.count;
+            } else if (offset == cap) {
+                target = insertNode(x, x.next);
+                offset = 0;
+            } else if (offset == 0) {
+                target = insertNode(x.prev, x);
+            } else {
+                //拆分节点，x保留前一半
+                int half = cap >>> 1;
+                Node<E> y = insertNode(x, x.next);
+                System.arraycopy(x.items, half, y.items, 0, cap - half);
+                Arrays.fill(x.items, half, cap, null);
+                y.count = cap - half;
+                x.count = half;
+                if (offset > half) {
+                    target = y;
+                    offset -= half;
+                }
+            }
+        }
+        final Object[] items = target.items;
+        int numMoved = target.count - offset;
+        if (numMoved > 0)
+            System.arraycopy(items, offset, items, offset + 1, numMoved);
+        items[offset] = e;
+        target.count++;
+        size++;
+        modCount++;
+        return target;
+    }
+
+    /*
+        删除节点x中offset位置的元素。
+        删除后x为空则断开x，返回false；否则若x与后继节点的元素合计不超过nodeCapacity的3/4，
+        则把后继节点的元素移到x的末尾并断开后继节点，返回true。
+        x保留时，被删除元素的后一个元素仍在x的offset位置（offset等于x.count时为后继节点的第一个元素），
+        只与后继节点合并就是为了保证这一点，迭代器依赖它。
+    */
+    private boolean unlinkAt(Node<E> x, int offset) {
+        final Object[] items = x.items;
+        int numMoved = x.count - offset - 1;
+        if (numMoved > 0)
+            System.arraycopy(items, offset + 1, items, offset, numMoved);
+        items[--x.count] = null; // clear to let GC do its work
+        size--;
+        modCount++;
+        if (x.count == 0) {
+            unlinkNode(x);
+            return false;
+        }
+        final Node<E> n = x.next;
+        if (n != null && x.count + n.count <= nodeCapacity - (nodeCapacity >>> 2)) {
+            System.arraycopy(n.items, 0, items, x.count, n.count);
+            x.count += n.count;
+            unlinkNode(n);
+        }
+        return true;
+    }
+
+    //将e插入到链表末尾
+    private void linkLast(E e) {
+        final Node<E> l = last;
+        if (l == null)
+            linkAt(insertNode(null, null), 0, e);
+        else
+            linkAt(l, l.count, e);
+    }
+
+    //将e插入到链表头部
+    private void linkFirst(E e) {
+        final Node<E> f = first;
+        if (f == null)
+            linkAt(insertNode(null, null), 0, e);
+        else
+            linkAt(f, 0, e);
+    }
+
+    //返回第一个元素，链表为空时抛出NoSuchElementException异常
+    public E getFirst() {
+        final Node<E> f = first;
+        if (f == null)
+            throw new NoSuchElementException();
+        return f.item(0);
+    }
+
+    //返回最后一个元素，链表为空时抛出NoSuchElementException异常
+    public E getLast() {
+        final Node<E> l = last;
+        if (l == null)
+            throw new NoSuchElementException();
+        return l.item(l.count - 1);
+    }
+
+    //删除并返回第一个元素，链表为空时抛出NoSuchElementException异常
+    public E removeFirst() {
+        final Node<E> f = first;
+        if (f == null)
+            throw new NoSuchElementException();
+        E element = f.item(0);
+        unlinkAt(f, 0);
+        return element;
+    }
+
+    //删除并返回最后一个元素，链表为空时抛出NoSuchElementException异常
+    public E removeLast() {
+        final Node<E> l = last;
+        if (l == null)
+            throw new NoSuchElementException();
+        E element = l.item(l.count - 1);
+        unlinkAt(l, l.count - 1);
+        return element;
+    }
+
+    //将元素插入到链表头部
+    public void addFirst(E e) {
+        linkFirst(e);
+    }
+
+    //将元素插入到链表尾部
+    public void addLast(E e) {
+        linkLast(e);
+    }
+
+    //判断是否包含传入元素
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    //返回元素个数
+    public int size() {
+        return size;
+    }
+
+    //将元素插入到链表尾部
+    public boolean add(E e) {
+        linkLast(e);
+        return true;
+    }
+
+    //删除第一次出现的传入元素
+    public boolean remove(Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    //将collection中的元素全部插入到链表尾部
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size, c);
+    }
+
+    /*
+        将collection中的元素全部插入到index位置。
+        index落在节点中间时，先把节点从index处拆成两个，
+        然后把元素依次填入前一部分节点的空位和新建的节点中，新建的节点都是满的（最后一个除外）。
+    */
+    public boolean addAll(int index, Collection<? extends E> c) {
+        checkPositionIndex(index);
+
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        if (numNew == 0)
+            return false;
+
+        //新元素插入到pred和succ之间
+        Node<E> pred, succ;
+        if (index == size) {
+            pred = last;
+            succ = null;
+        } else {
+            ListItr it = new ListItr(index);
+            Node<E> x = it.next;
+            int offset = it.nextOffset;
+            if (offset == 0) {
+                pred = x.prev;
+                succ = x;
+            } else {
+                //将x从offset处拆开，后一部分移到新节点succ中
+                int tail = x.count - offset;
+                succ = insertNode(x, x.next);
+                System.arraycopy(x.items, offset, succ.items, 0, tail);
+                Arrays.fill(x.items, offset, x.count, null);
+                succ.count = tail;
+                x.count = offset;
+                pred = x;
+            }
+        }
+
+        final int cap = nodeCapacity;
+        int i = 0;
+        //先填满pred的空位
+        if (pred != null) {
+            int n = Math.min(cap - pred.count, numNew);
+            System.arraycopy(a, 0, pred.items, pred.count, n);
+            pred.count += n;
+            i = n;
+        }
+        while (i < numNew) {
+            Node<E> n = insertNode(pred, succ);
+            int len = Math.min(cap, numNew - i);
+            System.arraycopy(a, i, n.items, 0, len);
+            n.count = len;
+            i += len;
+            pred = n;
+        }
+
+        size += numNew;
+        modCount++;
+        return true;
+    }
+
+    //删除符合规则的元素，逐个节点在数组内压缩，最后合并元素过少的相邻节点
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        final int expectedModCount = modCount;
+        int removed = 0;
+        try {
+            for (Node<E> x = first; x != null && modCount == expectedModCount; ) {
+                //先记录后继节点，因为unlinkNode会将x.next置为null
+                Node<E> next = x.next;
+                final Object[] items = x.items;
+                final int count = x.count;
+                int r = 0, w = 0;
+                try {
+                    for (; r < count; r++) {
+                        @SuppressWarnings("unchecked") E e = (E) items[r];
+                        if (!filter.test(e))
+                            items[w++] = e;
+                    }
+                } finally {
+                    // Preserve behavioral compatibility with AbstractCollection,
+                    // even if filter.test() throws.
+                    if (r != count) {
+                        System.arraycopy(items, r, items, w, count - r);
+                        w += count - r;
+                    }
+                    if (w != count) {
+                        Arrays.fill(items, w, count, null);
+                        x.count = w;
+                        size -= count - w;
+                        removed += count - w;
+                        if (w == 0)
+                            unlinkNode(x);
+                    }
+                }
+                x = next;
+            }
+        } finally {
+            if (removed > 0) {
+                //合并相邻节点，合并后的节点不超过nodeCapacity
+                for (Node<E> x = first; x != null; x = x.next) {
+                    Node<E> n;
+                    while ((n = x.next) != null && x.count + n.count <= nodeCapacity) {
+                        System.arraycopy(n.items, 0, x.items, x.count, n.count);
+                        x.count += n.count;
+                        unlinkNode(n);
+                    }
+                }
+                modCount++;
+            }
+        }
+        if (modCount != expectedModCount + (removed > 0 ? 1 : 0)) {
+            throw new ConcurrentModificationException();
+        }
+        return removed > 0;
+    }
+
+    //清空链表，断开所有节点并清空节点中的元素
+    public void clear() {
+        for (Node<E> x = first; x != null; ) {
+            Node<E> next = x.next;
+            Arrays.fill(x.items, 0, x.count, null);
+            x.count = 0;
+            x.next = null;
+            x.prev = null;
+            x = next;
+        }
+        first = last = null;
+        size = 0;
+        modCount++;
+    }
+
+    /*
+        获取index位置的元素。
+        从离index较近的一端开始，按节点的元素个数跳过整个节点，只需访问约index/nodeCapacity个节点。
+    */
+    public E get(int index) {
+        checkElementIndex(index);
+        Node<E> x;
+        int i;
+        if (index < (size >> 1)) {
+            for (x = first, i = index; i >= x.count; x = x.next)
+                i -= x.count;
+        } else {
+            //i为从末尾数起的元素个数（包含index位置的元素）
+            for (x = last, i = size - index; i > x.count; x = x.prev)
+                i -= x.count;
+            i = x.count - i;
+        }
+        return x.item(i);
+    }
+
+    //判断传入的位置是否为元素的位置
+    private boolean isElementIndex(int index) {
+        return index >= 0 && index < size;
+    }
+
+    //判断传入的位置是否为迭代器或插入操作可以使用的位置
+    private boolean isPositionIndex(int index) {
+        return index >= 0 && index <= size;
+    }
+
+    //构造IndexOutOfBoundsException异常的详细信息
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    private void checkElementIndex(int index) {
+        if (!isElementIndex(index))
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private void checkPositionIndex(int index) {
+        if (!isPositionIndex(index))
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    //获取元素第一次出现的位置，逐个节点扫描数组
+    public int indexOf(Object o) {
+        int base = 0;
+        for (Node<E> x = first; x != null; x = x.next) {
+            int i = x.indexOf(o, 0, x.count);
+            if (i >= 0)
+                return base + i;
+            base += x.count;
+        }
+        return -1;
+    }
+
+    //获取元素最后一次出现的位置，从最后一个节点往前扫描
+    public int lastIndexOf(Object o) {
+        int base = size;
+        for (Node<E> x = last; x != null; x = x.prev) {
+            base -= x.count;
+            int i = x.lastIndexOf(o);
+            if (i >= 0)
+                return base + i;
+        }
+        return -1;
+    }
+
+    // Queue operations.
+
+    //获取第一个元素，链表为空时返回null
+    public E peek() {
+        final Node<E> f = first;
+        return (f == null) ? null : f.item(0);
+    }
+
+    //获取第一个元素，链表为空时抛出NoSuchElementException异常
+    public E element() {
+        return getFirst();
+    }
+
+    //删除并返回第一个元素，链表为空时返回null
+    public E poll() {
+        final Node<E> f = first;
+        return (f == null) ? null : removeFirst();
+    }
+
+    //删除并返回第一个元素，链表为空时抛出NoSuchElementException异常
+    public E remove() {
+        return removeFirst();
+    }
+
+    //将元素插入到链表尾部
+    public boolean offer(E e) {
+        return add(e);
+    }
+
+    // Deque operations
+
+    //将元素插入到链表头部
+    public boolean offerFirst(E e) {
+        addFirst(e);
+        return true;
+    }
+
+    //将元素插入到链表尾部
+    public boolean offerLast(E e) {
+        addLast(e);
+        return true;
+    }
+
+    //获取第一个元素，链表为空时返回null
+    public E peekFirst() {
+        return peek();
+    }
+
+    //获取最后一个元素，链表为空时返回null
+    public E peekLast() {
+        final Node<E> l = last;
+        return (l == null) ? null : l.item(l.count - 1);
+    }
+
+    //删除并返回第一个元素，链表为空时返回null
+    public E pollFirst() {
+        return poll();
+    }
+
+    //删除并返回最后一个元素，链表为空时返回null
+    public E pollLast() {
+        final Node<E> l = last;
+        return (l == null) ? null : removeLast();
+    }
+
+    //将元素插入到链表头部
+    public void push(E e) {
+        addFirst(e);
+    }
+
+    //删除并返回第一个元素
+    public E pop() {
+        return removeFirst();
+    }
+
+    //删除第一次出现的传入元素
+    public boolean removeFirstOccurrence(Object o) {
+        for (Node<E> x = first; x != null; x = x.next) {
+            int i = x.indexOf(o, 0, x.count);
+            if (i >= 0) {
+                unlinkAt(x, i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //删除最后一次出现的传入元素
+    public boolean removeLastOccurrence(Object o) {
+        for (Node<E> x = last; x != null; x = x.prev) {
+            int i = x.lastIndexOf(o);
+            if (i >= 0) {
+                unlinkAt(x, i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //返回一个从index位置开始的列表迭代器
+    public ListIterator<E> listIterator(int index) {
+        checkPositionIndex(index);
+        return new ListItr(index);
+    }
+
+    /*
+        列表迭代器，用（节点，偏移量）表示下一个要迭代的元素。
+        偏移量可以等于节点的元素个数，表示下一个元素是后继节点的第一个元素，在next中再移到后继节点。
+    */
+    private class ListItr implements ListIterator<E> {
+        //刚被迭代的元素所在节点，null表示没有
+        private Node<E> lastReturned;
+        //刚被迭代的元素在节点中的偏移量
+        private int lastOffset;
+        //下一个要迭代的元素所在节点，null表示已经到达末尾
+        private Node<E> next;
+        //下一个要迭代的元素在节点中的偏移量
+        private int nextOffset;
+        //下一个要迭代的元素的位置
+        private int nextIndex;
+        private int expectedModCount = modCount;
+
+        ListItr(int index) {
+            // assert isPositionIndex(index);
+            if (index < size) {
+                Node<E> x;
+                int i;
+                if (index < (size >> 1)) {
+                    for (x = first, i = index; i >= x.count; x = x.next)
+                        i -= x.count;
+                } else {
+                    for (x = last, i = size - index; i > x.count; x = x.prev)
+                        i -= x.count;
+                    i = x.count - i;
+                }
+                next = x;
+                nextOffset = i;
+            }
+            nextIndex = index;
+        }
+
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        public E next() {
+            checkForComodification();
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            Node<E> x = next;
+            int i = nextOffset;
+            if (i == x.count) {
+                x = next = x.next;
+                i = 0;
+            }
+            lastReturned = x;
+            lastOffset = i;
+            nextOffset = i + 1;
+            nextIndex++;
+            return x.item(i);
+        }
+
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        public E previous() {
+            checkForComodification();
+            if (!hasPrevious())
+                throw new NoSuchElementException();
+
+            Node<E> x = next;
+            int i = nextOffset;
+            if (x == null || i == 0) {
+                x = (x == null) ? last : x.prev;
+                i = x.count;
+            }
+            i--;
+            lastReturned = next = x;
+            lastOffset = nextOffset = i;
+            nextIndex--;
+            return x.item(i);
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        //删除刚被迭代过的元素，删除后下一个要迭代的元素就是被删除元素的后一个元素
+        public void remove() {
+            checkForComodification();
+            if (lastReturned == null)
+                throw new IllegalStateException();
+
+            Node<E> x = lastReturned;
+            Node<E> lastNext = x.next;
+            //若不是previous之后删除，下一个要迭代的元素位置前移
+            if (next != x || nextOffset != lastOffset)
+                nextIndex--;
+            if (unlinkAt(x, lastOffset)) {
+                next = x;
+                nextOffset = lastOffset;
+            } else {
+                next = lastNext;
+                nextOffset = 0;
+            }
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        public void set(E e) {
+            if (lastReturned == null)
+                throw new IllegalStateException();
+            checkForComodification();
+            lastReturned.items[lastOffset] = e;
+        }
+
+        //将元素插入到下一个要迭代的元素之前
+        public void add(E e) {
+            checkForComodification();
+            lastReturned = null;
+            Node<E> x = next;
+            int offset = nextOffset;
+            if (x == null) {
+                if ((x = last) == null) {
+                    linkLast(e);
+                    next = last;
+                    nextOffset = 1;
+                    nextIndex++;
+                    expectedModCount = modCount;
+                    return;
+                }
+                offset = x.count;
+            }
+            Node<E> target = linkAt(x, offset, e);
+            //按linkAt的约定计算新元素的偏移量
+            int i;
+            if (target == x)
+                i = offset;
+            else if (target.next == x)
+                i = target.count - 1;
+            else
+                i = offset - x.count;
+            next = target;
+            nextOffset = i + 1;
+            nextIndex++;
+            expectedModCount = modCount;
+        }
+
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            while (modCount == expectedModCount && nextIndex < size) {
+                if (nextOffset == next.count) {
+                    next = next.next;
+                    nextOffset = 0;
+                }
+                lastReturned = next;
+                lastOffset = nextOffset;
+                action.accept(next.item(nextOffset++));
+                nextIndex++;
+            }
+            checkForComodification();
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    //链表节点，元素连续存放在items[0, count)中
+    private static class Node<E> {
+        //存放元素的数组
+        final Object[] items;
+        //节点中的元素个数
+        int count;
+        //指向下一个节点
+        Node<E> next;
+        //指向前一个节点
+        Node<E> prev;
+
+        Node(Node<E> prev, int capacity, Node<E> next) {
+            this.items = new Object[capacity];
+            this.next = next;
+            this.prev = prev;
+        }
+
+        @SuppressWarnings("unchecked")
+        E item(int i) {
+            return (E) items[i];
+        }
+
+        //在[from, to)中查找o第一次出现的偏移量，找不到时返回-1
+        int indexOf(Object o, int from, int to) {
+            final Object[] items = this.items;
+            if (o == null) {
+                for (int i = from; i < to; i++)
+                    if (items[i] == null)
+                        return i;
+            } else {
+                for (int i = from; i < to; i++)
+                    if (o.equals(items[i]))
+                        return i;
+            }
+            return -1;
+        }
+
+        //查找o最后一次出现的偏移量，找不到时返回-1
+        int lastIndexOf(Object o) {
+            final Object[] items = this.items;
+            if (o == null) {
+                for (int i = count - 1; i >= 0; i--)
+                    if (items[i] == null)
+                        return i;
+            } else {
+                for (int i = count - 1; i >= 0; i--)
+                    if (o.equals(items[i]))
+                        return i;
+            }
+            return -1;
+        }
+    }
+
+    //返回一个从后往前的迭代器
+    public Iterator<E> descendingIterator() {
+        return new DescendingIterator();
+    }
+
+    //一个从后往前的列表迭代器
+    private class DescendingIterator implements Iterator<E> {
+        private final ListItr itr = new ListItr(size());
+        public boolean hasNext() {
+            return itr.hasPrevious();
+        }
+        public E next() {
+            return itr.previous();
+        }
+        public void remove() {
+            itr.remove();
+        }
+    }
+
+    //遍历所有元素，按节点内的数组遍历
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        for (Node<E> x = first; x != null && modCount == expectedModCount; x = x.next) {
+            final Object[] items = x.items;
+            for (int i = 0, n = x.count; i < n && modCount == expectedModCount; i++) {
+                @SuppressWarnings("unchecked") E e = (E) items[i];
+                action.accept(e);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private UnrolledLinkedList<E> superClone() {
+        try {
+            return (UnrolledLinkedList<E>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    //克隆UnrolledLinkedList，节点容量保持不变
+    public Object clone() {
+        UnrolledLinkedList<E> clone = superClone();
+
+        // Put clone into "virgin" state
+        clone.first = clone.last = null;
+        clone.size = 0;
+        clone.modCount = 0;
+
+        // Initialize clone with our elements
+        clone.addAll(this);
+
+        return clone;
+    }
+
+    //生成一个存有所有元素的数组，按节点整段复制
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        int i = 0;
+        for (Node<E> x = first; x != null; x = x.next) {
+            System.arraycopy(x.items, 0, result, i, x.count);
+            i += x.count;
+        }
+        return result;
+    }
+
+    //将所有元素转存至指定泛型数组中
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size)
+            a = (T[])java.lang.reflect.Array.newInstance(
+                    a.getClass().getComponentType(), size);
+        int i = 0;
+        for (Node<E> x = first; x != null; x = x.next) {
+            System.arraycopy(x.items, 0, a, i, x.count);
+            i += x.count;
+        }
+
+        if (a.length > size)
+            a[size] = null;
+
+        return a;
+    }
+
+    //私有方法，将实例序列化，节点结构不写入流中
+    private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+        // Write out node capacity, and any hidden serialization magic
+        s.defaultWriteObject();
+
+        // Write out size
+        s.writeInt(size);
+
+        // Write out all elements in the proper order.
+        for (Node<E> x = first; x != null; x = x.next)
+            for (int i = 0; i < x.count; i++)
+                s.writeObject(x.items[i]);
+    }
+
+    //私有方法，从反序列化中重构实例，节点都是满的（最后一个除外）
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+        // Read in node capacity, and any hidden serialization magic
+        s.defaultReadObject();
+        if (nodeCapacity < MIN_NODE_CAPACITY)
+            throw new java.io.InvalidObjectException("Illegal node capacity: " +
+                    nodeCapacity);
+
+        // Read in size
+        int size = s.readInt();
+
+        // Read in all elements in the proper order.
+        for (int i = 0; i < size; i++)
+            linkLast((E)s.readObject());
+    }
+
+    //返回一个按节点分割的分割器
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ULLSpliterator<E>(this, null, 0, -1, 0);
+    }
+
+    /*
+        按节点边界分割的分割器。
+        LLSpliterator分割时要把元素复制到数组中，这里只需记录（节点，偏移量，元素个数），
+        分割时沿着节点向后走，直到累计的元素个数接近剩余元素的一半，
+        前一半作为新的分割器返回，不复制任何元素，所以两个分割器的元素个数都是准确的。
+    */
+    static final class ULLSpliterator<E> implements Spliterator<E> {
+        final UnrolledLinkedList<E> list; // null OK unless traversed
+        //当前节点
+        Node<E> current;      // current node; null until initialized
+        //当前元素在节点中的偏移量
+        int offset;
+        //记录未被操作的元素个数，若等于-1，则是所有元素都未被操作
+        int est;              // size; -1 until first needed
+        int expectedModCount; // initialized when est set
+
+        ULLSpliterator(UnrolledLinkedList<E> list, Node<E> current, int offset,
+                       int est, int expectedModCount) {
+            this.list = list;
+            this.current = current;
+            this.offset = offset;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        //获取未被分割器操作的元素个数
+        final int getEst() {
+            int s; // force initialization
+            final UnrolledLinkedList<E> lst;
+            if ((s = est) < 0) {
+                if ((lst = list) == null)
+                    s = est = 0;
+                else {
+                    expectedModCount = lst.modCount;
+                    current = lst.first;
+                    offset = 0;
+                    s = est = lst.size;
+                }
+            }
+            return s;
+        }
+
+        public long estimateSize() { return (long) getEst(); }
+
+        //在离剩余元素中点最近的节点边界处分割，剩余元素都在一个节点中时不再分割
+        public Spliterator<E> trySplit() {
+            Node<E> p;
+            int s = getEst();
+            if (s > 1 && (p = current) != null) {
+                int half = s >>> 1;
+                int taken = p.count - offset;
+                Node<E> q = p.next;
+                while (q != null && taken + q.count <= half) {
+                    taken += q.count;
+                    q = q.next;
+                }
+                if (taken > 0 && taken < s && q != null) {
+                    ULLSpliterator<E> prefix = new ULLSpliterator<E>(
+                            list, p, offset, taken, expectedModCount);
+                    current = q;
+                    offset = 0;
+                    est = s - taken;
+                    return prefix;
+                }
+            }
+            return null;
+        }
+
+        //对剩余元素按节点内的数组进行传入规则操作
+        public void forEachRemaining(Consumer<? super E> action) {
+            Node<E> p; int n;
+            if (action == null) throw new NullPointerException();
+            if ((n = getEst()) > 0 && (p = current) != null) {
+                int i = offset;
+                current = null;
+                est = 0;
+                do {
+                    int end = Math.min(p.count, i + n);
+                    n -= end - i;
+                    for (; i < end; i++) {
+                        @SuppressWarnings("unchecked") E e = (E) p.items[i];
+                        action.accept(e);
+                    }
+                    i = 0;
+                } while (n > 0 && (p = p.next) != null);
+            }
+            if (list.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        //对当前元素进行传入规则操作
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Node<E> p;
+            if (action == null) throw new NullPointerException();
+            if (getEst() > 0 && (p = current) != null) {
+                if (offset >= p.count) {
+                    if ((p = current = p.next) == null)
+                        throw new ConcurrentModificationException();
+                    offset = 0;
+                }
+                --est;
+                E e = p.item(offset++);
+                action.accept(e);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}